@@ -2,7 +2,6 @@ package com.miguelgaeta.android_media_picker;
 
 import android.Manifest;
 import android.annotation.SuppressLint;
-import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
@@ -10,11 +9,12 @@ import android.os.Bundle;
 import android.os.Environment;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
-import android.webkit.MimeTypeMap;
 import android.widget.ImageView;
 import android.widget.Toast;
 
 import com.miguelgaeta.media_picker.MediaPicker;
+import com.miguelgaeta.media_picker.MediaPickerResult;
+import com.miguelgaeta.media_picker.MimeTypeDetector;
 import com.miguelgaeta.media_picker.RequestType;
 import com.tbruyelle.rxpermissions.RxPermissions;
 
@@ -74,7 +74,7 @@ public class AppActivity extends AppCompatActivity implements MediaPicker.Provid
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
 
-        MediaPicker.handleActivityResult(this, requestCode, resultCode, data, new MediaPicker.OnResult() {
+        MediaPicker.handleActivityResultAsync(this, requestCode, resultCode, data, new MediaPicker.OnResolvedResult() {
 
             @Override
             public void onError(IOException e) {
@@ -83,12 +83,13 @@ public class AppActivity extends AppCompatActivity implements MediaPicker.Provid
             }
 
             @Override
-            public void onSuccess(final Uri uri, final RequestType request) {
-                final String mimeType = getMimeType(getContext(), uri);
+            public void onSuccess(final MediaPickerResult result) {
+                final Uri uri = result.getUri();
+                final String mimeType = result.getMimeType();
 
-                Log.e("MediaPicker", "Got file result: '" + uri + "', with mime type: '" + mimeType + "', for code: '" + request + "'.");
+                Log.e("MediaPicker", "Got file result: '" + uri + "', with mime type: '" + mimeType + "', size: '" + result.getSize() + "', for code: '" + result.getRequest() + "'.");
 
-                if (request != RequestType.CROP && isImage(mimeType)) {
+                if (result.getRequest() != RequestType.CROP && MimeTypeDetector.isCroppableImage(mimeType)) {
 
                     final int paramWidth = 512;
                     final int paramHeight = 512;
@@ -111,82 +112,6 @@ public class AppActivity extends AppCompatActivity implements MediaPicker.Provid
         });
     }
 
-    /**
-     * Convenience method to determine if a given
-     * mime type is an image.
-     *
-     * @param mimeType Mime type string.
-     *
-     * @return True if image, false otherwise.
-     */
-    public static boolean isImage(final String mimeType) {
-        return mimeType != null && mimeType.startsWith("image/");
-    }
-
-    /**
-     * Get a best guess of the mime type associated with the target {@link Uri}.
-     *
-     * @param context Optional {@link Context} that checks for mime type from {@link ContentResolver}.
-     * @param uri Target {@link Uri} to obtain mime type for.
-     *
-     * @return Discovered mime type or null.
-     */
-    public static String getMimeType(final Context context, final Uri uri) {
-        if (uri == null) {
-            return null;
-        }
-
-        if (context != null) {
-            final String mimeType = getMimeTypeFromContentResolver(context.getContentResolver(), uri);
-
-            if (mimeType != null) {
-                return mimeType;
-            }
-        }
-
-        return getMimeTypeFromExtension(uri.toString());
-    }
-
-    /**
-     * Uses {@link ContentResolver#getType(Uri)} to extract a mime type.
-     *
-     * @param contentResolver {@link ContentResolver}.
-     * @param uri {@link Uri}.
-     *
-     * @return Discovered mime type or null.
-     */
-    private static String getMimeTypeFromContentResolver(final ContentResolver contentResolver,
-                                                         final Uri uri) {
-        if (uri == null || uri.getScheme() == null || contentResolver == null) {
-            return null;
-        }
-
-        if (!uri.getScheme().equals(ContentResolver.SCHEME_CONTENT)) {
-            return null;
-        }
-
-        return contentResolver.getType(uri);
-    }
-
-    /**
-     * Uses {@link MimeTypeMap#getMimeTypeFromExtension(String)} to extract a mime type.
-     *
-     * @param url {@link Uri}.
-     *
-     * @return Discovered mime type or null.
-     */
-    private static String getMimeTypeFromExtension(final String url) {
-        String extension = MimeTypeMap.getFileExtensionFromUrl(url);
-
-        if (extension != null) {
-            extension = extension.toLowerCase();
-
-            return MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension);
-        }
-
-        return null;
-    }
-
     @Override
     public Context getContext() {
         return this;
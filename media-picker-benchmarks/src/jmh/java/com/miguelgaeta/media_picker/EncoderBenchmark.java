@@ -0,0 +1,109 @@
+package com.miguelgaeta.media_picker;
+
+import android.util.Base64;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the {@link Base64Codec} implementations across input sizes, encoding
+ * whole arrays and streaming through a {@link DataUrlChunker} with pooled buffers.
+ * Run with the GC profiler to also track the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EncoderBenchmark {
+
+    private static final String PREFIX = "data:image/jpeg;base64,";
+
+    private static final int MAX_CHUNK_LENGTH = 64 * 1024;
+
+    private static final DataUrlChunker.Tracer NO_TRACER = new DataUrlChunker.Tracer() {
+
+        @Override
+        public long start() {
+            return 0;
+        }
+
+        @Override
+        public void end(final long start, final long bytes, final Throwable error) {
+
+        }
+    };
+
+    @Param({"1024", "65536", "1048576", "10485760", "52428800"})
+    public int size;
+
+    @Param({"PLATFORM", "TABLE", "JAVA"})
+    public String codecName;
+
+    private Base64Codec codec;
+
+    private byte[] bytes;
+
+    private char[] chars;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        codec = getCodec(codecName);
+
+        bytes = new byte[size];
+
+        new Random(size).nextBytes(bytes);
+
+        // Room for every quantum plus a line break per wrapped line.
+        chars = new char[(size + 2) / 3 * 4 + (size / 57 + 1) * 2];
+    }
+
+    @Benchmark
+    public int encode() {
+        return codec.encode(bytes, 0, size, chars, 0, Base64.NO_WRAP);
+    }
+
+    @Benchmark
+    public int encodeWrapped() {
+        return codec.encode(bytes, 0, size, chars, 0, Base64.DEFAULT);
+    }
+
+    @Benchmark
+    public long getDataUrlChunks() throws IOException {
+        final DataUrlChunker chunker = new DataUrlChunker(PREFIX, new ByteArrayInputStream(bytes), MAX_CHUNK_LENGTH, codec, NO_TRACER);
+
+        long length = 0;
+
+        try {
+            while (chunker.hasNext()) {
+                length += chunker.next().length();
+            }
+
+        } finally {
+            chunker.close();
+        }
+
+        return length;
+    }
+
+    private static Base64Codec getCodec(final String name) {
+        switch (name) {
+            case "PLATFORM":
+                return Base64Codec.PLATFORM;
+            case "JAVA":
+                return Base64Codec.JAVA;
+            default:
+                return Base64Codec.TABLE;
+        }
+    }
+}
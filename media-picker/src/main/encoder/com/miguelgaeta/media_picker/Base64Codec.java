@@ -0,0 +1,50 @@
+package com.miguelgaeta.media_picker;
+
+import android.util.Base64;
+
+/**
+ * Encodes bytes as {@link Base64} directly into a caller provided destination.
+ *
+ * Implementations honor the {@link Base64} flags ({@link Base64#NO_PADDING},
+ * {@link Base64#NO_WRAP}, {@link Base64#CRLF} and {@link Base64#URL_SAFE}) and
+ * must produce exactly {@link Encoder#getEncodedLength(long, int)} characters.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public interface Base64Codec {
+
+    /**
+     * Codec backed by {@link android.util.Base64}.
+     */
+    Base64Codec PLATFORM = new PlatformBase64Codec();
+
+    /**
+     * In library table driven codec, does not depend on the Android framework.
+     */
+    Base64Codec TABLE = new TableBase64Codec();
+
+    /**
+     * Codec backed by {@link java.util.Base64}, requires API 26.
+     */
+    Base64Codec JAVA = new JavaBase64Codec();
+
+    /**
+     * Encode a range of bytes into a byte destination.
+     *
+     * @param source Source bytes.
+     * @param sourceOffset Offset of the first source byte.
+     * @param length Number of source bytes to encode.
+     * @param destination Destination, must have room for the encoded length.
+     * @param destinationOffset Offset of the first encoded byte.
+     * @param flags Target {@link Base64} encoding flags.
+     *
+     * @return Number of bytes written.
+     */
+    int encode(final byte[] source, final int sourceOffset, final int length,
+               final byte[] destination, final int destinationOffset, final int flags);
+
+    /**
+     * @see #encode(byte[], int, int, byte[], int, int)
+     */
+    int encode(final byte[] source, final int sourceOffset, final int length,
+               final char[] destination, final int destinationOffset, final int flags);
+}
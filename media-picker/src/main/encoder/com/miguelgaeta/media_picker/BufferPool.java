@@ -0,0 +1,342 @@
+package com.miguelgaeta.media_picker;
+
+import android.support.annotation.NonNull;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, thread safe pool of byte and char buffers used by the {@link Encoder}.
+ *
+ * Buffers are handed out in power of two size classes.  Small classes are first
+ * cached per thread, anything that does not fit there overflows into a shared
+ * tier capped at {@link #MAX_SHARED_BYTES}.  Buffers larger than the biggest
+ * class are allocated exactly and never retained.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public final class BufferPool {
+
+    private static final int MIN_CLASS_SHIFT = 10;
+    private static final int MAX_CLASS_SHIFT = 22;
+    private static final int CLASS_COUNT = MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1;
+
+    /**
+     * Largest size class kept in the per thread caches, bigger
+     * buffers are only ever retained by the shared tier.
+     */
+    private static final int MAX_THREAD_CLASS_SHIFT = 16;
+
+    private static final int THREAD_CLASS_COUNT = MAX_THREAD_CLASS_SHIFT - MIN_CLASS_SHIFT + 1;
+
+    private static final long MAX_SHARED_BYTES = 8 * 1024 * 1024;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong sharedBytes = new AtomicLong();
+
+    private static final Tier<byte[]> bytes = new Tier<byte[]>() {
+
+        @Override
+        byte[] allocate(final int length) {
+            return new byte[length];
+        }
+
+        @Override
+        int length(final byte[] buffer) {
+            return buffer.length;
+        }
+    };
+
+    private static final Tier<char[]> chars = new Tier<char[]>() {
+
+        @Override
+        char[] allocate(final int length) {
+            return new char[length];
+        }
+
+        @Override
+        int length(final char[] buffer) {
+            return buffer.length;
+        }
+
+        @Override
+        long byteSize(final int length) {
+            return length * 2L;
+        }
+    };
+
+    private BufferPool() {
+
+    }
+
+    /**
+     * Fetch a byte buffer of at least the requested length.
+     *
+     * @param minLength Minimum buffer length.
+     *
+     * @return Buffer, should be handed back with {@link #release(byte[])}.
+     */
+    static byte[] acquireBytes(final int minLength) {
+        return bytes.acquire(minLength);
+    }
+
+    /**
+     * Hand a buffer obtained from {@link #acquireBytes(int)} back to the pool.
+     */
+    static void release(final byte[] buffer) {
+        bytes.release(buffer);
+    }
+
+    /**
+     * @see #acquireBytes(int)
+     */
+    static char[] acquireChars(final int minLength) {
+        return chars.acquire(minLength);
+    }
+
+    /**
+     * @see #release(byte[])
+     */
+    static void release(final char[] buffer) {
+        chars.release(buffer);
+    }
+
+    /**
+     * Drop every buffer held by the shared tier, useful when
+     * the application is asked to trim its memory.
+     */
+    public static void trim() {
+        bytes.trim();
+        chars.trim();
+    }
+
+    /**
+     * @return Snapshot of the pool counters.
+     */
+    public static Stats getStats() {
+        return new Stats(hits.get(), misses.get(), sharedBytes.get(), bytes.getThreadBytes() + chars.getThreadBytes());
+    }
+
+    /**
+     * Index of the smallest size class able to hold the requested
+     * length, or -1 when it is larger than every class.
+     */
+    private static int getSizeClass(final int length) {
+        if (length <= 1 << MIN_CLASS_SHIFT) {
+            return 0;
+        }
+
+        final int shift = 32 - Integer.numberOfLeadingZeros(length - 1);
+
+        return shift <= MAX_CLASS_SHIFT ? shift - MIN_CLASS_SHIFT : -1;
+    }
+
+    private static abstract class Tier<T> {
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private final ConcurrentLinkedQueue<T>[] shared = new ConcurrentLinkedQueue[CLASS_COUNT];
+
+        /**
+         * Cache of every live thread, dropped once its thread is collected.
+         */
+        private final Map<Thread, ThreadCache> caches = new WeakHashMap<>();
+
+        private final ThreadLocal<ThreadCache> local = new ThreadLocal<ThreadCache>() {
+
+            @Override
+            protected ThreadCache initialValue() {
+                final ThreadCache cache = new ThreadCache();
+
+                synchronized (caches) {
+                    caches.put(Thread.currentThread(), cache);
+                }
+
+                return cache;
+            }
+        };
+
+        Tier() {
+            for (int i = 0; i < CLASS_COUNT; i++) {
+                shared[i] = new ConcurrentLinkedQueue<>();
+            }
+        }
+
+        abstract T allocate(final int length);
+
+        abstract int length(final T buffer);
+
+        long byteSize(final int length) {
+            return length;
+        }
+
+        @SuppressWarnings("unchecked")
+        T acquire(final int minLength) {
+            final int sizeClass = getSizeClass(minLength);
+
+            if (sizeClass < 0) {
+                misses.incrementAndGet();
+
+                return allocate(minLength);
+            }
+
+            final ThreadCache cache = local.get();
+
+            if (sizeClass < THREAD_CLASS_COUNT && cache.buffers[sizeClass] != null) {
+                final T buffer = (T) cache.buffers[sizeClass];
+
+                cache.buffers[sizeClass] = null;
+                cache.bytes -= byteSize(length(buffer));
+
+                hits.incrementAndGet();
+
+                return buffer;
+            }
+
+            final T buffer = shared[sizeClass].poll();
+
+            if (buffer != null) {
+                sharedBytes.addAndGet(-byteSize(length(buffer)));
+
+                hits.incrementAndGet();
+
+                return buffer;
+            }
+
+            misses.incrementAndGet();
+
+            return allocate(1 << (sizeClass + MIN_CLASS_SHIFT));
+        }
+
+        void release(final T buffer) {
+            if (buffer == null) {
+                return;
+            }
+
+            final int length = length(buffer);
+            final int sizeClass = getSizeClass(length);
+
+            // Only exact size class buffers are pooled.
+            if (sizeClass < 0 || length != 1 << (sizeClass + MIN_CLASS_SHIFT)) {
+                return;
+            }
+
+            final ThreadCache cache = local.get();
+            final long size = byteSize(length);
+
+            if (sizeClass < THREAD_CLASS_COUNT && cache.buffers[sizeClass] == null) {
+                cache.buffers[sizeClass] = buffer;
+                cache.bytes += size;
+
+                return;
+            }
+
+            if (sharedBytes.addAndGet(size) > MAX_SHARED_BYTES) {
+                sharedBytes.addAndGet(-size);
+
+                return;
+            }
+
+            shared[sizeClass].offer(buffer);
+        }
+
+        void trim() {
+            for (final ConcurrentLinkedQueue<T> queue : shared) {
+                T buffer;
+
+                while ((buffer = queue.poll()) != null) {
+                    sharedBytes.addAndGet(-byteSize(length(buffer)));
+                }
+            }
+        }
+
+        /**
+         * @return Bytes held by the caches of the live threads.
+         */
+        long getThreadBytes() {
+            long total = 0;
+
+            synchronized (caches) {
+                for (final ThreadCache cache : caches.values()) {
+                    total += cache.bytes;
+                }
+            }
+
+            return total;
+        }
+    }
+
+    /**
+     * Buffers cached by a single thread, at most one per small size class.
+     */
+    private static final class ThreadCache {
+
+        private final Object[] buffers = new Object[THREAD_CLASS_COUNT];
+
+        /**
+         * Only written by the owning thread.
+         */
+        private volatile long bytes;
+    }
+
+    /**
+     * Point in time view of the pool counters.  In steady state the number of
+     * misses should stop growing while hits keep increasing.
+     */
+    public static final class Stats {
+
+        private final long hits;
+        private final long misses;
+        private final long sharedBytes;
+        private final long threadBytes;
+
+        Stats(final long hits, final long misses, final long sharedBytes, final long threadBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.sharedBytes = sharedBytes;
+            this.threadBytes = threadBytes;
+        }
+
+        /**
+         * @return Number of requests served by a pooled buffer.
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return Number of requests that had to allocate.
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return Bytes currently retained by the pool, in the shared tier and the per thread caches.
+         */
+        public long getRetainedBytes() {
+            return sharedBytes + threadBytes;
+        }
+
+        /**
+         * @return Bytes currently held by the shared tier.
+         */
+        public long getSharedBytes() {
+            return sharedBytes;
+        }
+
+        /**
+         * @return Bytes currently held by the per thread caches of live threads.
+         */
+        public long getThreadBytes() {
+            return threadBytes;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "BufferPool.Stats{hits=" + hits + ", misses=" + misses + ", sharedBytes=" + sharedBytes + ", threadBytes=" + threadBytes + "}";
+        }
+    }
+}
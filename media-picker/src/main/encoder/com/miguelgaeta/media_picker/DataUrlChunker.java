@@ -0,0 +1,171 @@
+package com.miguelgaeta.media_picker;
+
+import android.util.Base64;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+
+/**
+ * Lazily encodes a source as a sequence of data url chunks, each at most a fixed
+ * number of characters long.  Only the first chunk carries the data url prefix
+ * and every chunk but the last holds a whole number of {@link Base64} quanta,
+ * so concatenating them yields the complete data url.
+ *
+ * The source is only read as chunks are requested, so the first one can be sent
+ * before the source has been read in full.
+ *
+ * @see Encoder#getDataUrlChunks(String, InputStream, int)
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public final class DataUrlChunker implements Closeable {
+
+    /**
+     * Brackets the encoding of every chunk, letting the caller time it.
+     */
+    interface Tracer {
+
+        /**
+         * @return Token handed back to {@link #end(long, long, Throwable)}.
+         */
+        long start();
+
+        /**
+         * @param start Token returned when the chunk started.
+         * @param bytes Source bytes encoded.
+         * @param error Failure that ended the chunk, or null.
+         */
+        void end(long start, long bytes, Throwable error);
+    }
+
+    private final PushbackInputStream inputStream;
+    private final Base64Codec codec;
+    private final int maxChunkLength;
+    private final Tracer tracer;
+
+    private String prefix;
+
+    private byte[] buffer;
+    private char[] scratch;
+
+    private boolean finished;
+
+    DataUrlChunker(final String prefix,
+                   final InputStream inputStream,
+                   final int maxChunkLength,
+                   final Base64Codec codec,
+                   final Tracer tracer) {
+        if (maxChunkLength - prefix.length() < 4) {
+
+            throw new IllegalArgumentException("Chunk length must fit the data url prefix and at least one encoded quantum.");
+        }
+
+        this.prefix = prefix;
+        this.inputStream = new PushbackInputStream(inputStream, 1);
+        this.maxChunkLength = maxChunkLength;
+        this.codec = codec;
+        this.tracer = tracer;
+    }
+
+    /**
+     * @return True if another chunk is available from {@link #next()}.
+     */
+    public boolean hasNext() {
+        return !finished;
+    }
+
+    /**
+     * Read and encode the next chunk of the source.
+     *
+     * @return Next chunk, or null once every chunk has been returned.
+     *
+     * @throws IOException Failure to read source.
+     */
+    public String next() throws IOException {
+        if (finished) {
+            return null;
+        }
+
+        final int prefixLength = prefix != null ? prefix.length() : 0;
+        final int chunkBytes = (maxChunkLength - prefixLength) / 4 * 3;
+
+        if (buffer == null || buffer.length < chunkBytes) {
+            BufferPool.release(buffer);
+            BufferPool.release(scratch);
+
+            buffer = BufferPool.acquireBytes(maxChunkLength / 4 * 3);
+            scratch = BufferPool.acquireChars(maxChunkLength);
+        }
+
+        final long start = tracer.start();
+
+        int total = 0;
+        int length;
+
+        Throwable error = null;
+
+        try {
+            int bytesRead;
+
+            while (total < chunkBytes && (bytesRead = inputStream.read(buffer, total, chunkBytes - total)) != -1) {
+                total += bytesRead;
+            }
+
+            finished = total < chunkBytes || isExhausted();
+
+            length = codec.encode(buffer, 0, total, scratch, 0, Base64.NO_WRAP);
+
+        } catch (final IOException | RuntimeException e) {
+            error = e;
+
+            throw e;
+
+        } finally {
+            tracer.end(start, total, error);
+        }
+
+        final String chunk = prefix != null ? prefix + new String(scratch, 0, length) : new String(scratch, 0, length);
+
+        prefix = null;
+
+        if (finished) {
+            close();
+        }
+
+        return chunk;
+    }
+
+    /**
+     * Release the pooled buffers and close the source, safe to call
+     * before every chunk has been read to abandon the remainder.
+     */
+    @Override
+    public void close() throws IOException {
+        finished = true;
+
+        BufferPool.release(buffer);
+        BufferPool.release(scratch);
+
+        buffer = null;
+        scratch = null;
+
+        inputStream.close();
+    }
+
+    /**
+     * Look a single byte ahead so the caller knows a full
+     * chunk was the last one without another round trip.
+     */
+    private boolean isExhausted() throws IOException {
+        final int next = inputStream.read();
+
+        if (next == -1) {
+            return true;
+        }
+
+        inputStream.unread(next);
+
+        return false;
+    }
+}
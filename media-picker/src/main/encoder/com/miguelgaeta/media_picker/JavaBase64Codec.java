@@ -0,0 +1,83 @@
+package com.miguelgaeta.media_picker;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.util.Base64;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link Base64Codec} backed by {@link java.util.Base64}, only available from API 26
+ * on Android.  Line wrapping is applied while copying into the destination so the
+ * output matches {@link Base64}, including the trailing line break.
+ */
+@TargetApi(Build.VERSION_CODES.O)
+class JavaBase64Codec implements Base64Codec {
+
+    private static final int LINE_LENGTH = 76;
+
+    @Override
+    public int encode(final byte[] source, final int sourceOffset, final int length,
+                      final byte[] destination, final int destinationOffset, final int flags) {
+        final ByteBuffer encoded = getEncoder(flags).encode(ByteBuffer.wrap(source, sourceOffset, length));
+
+        final byte[] array = encoded.array();
+        final int end = encoded.limit();
+
+        if ((flags & Base64.NO_WRAP) != 0) {
+            System.arraycopy(array, 0, destination, destinationOffset, end);
+
+            return end;
+        }
+
+        int d = destinationOffset;
+
+        for (int offset = 0; offset < end; offset += LINE_LENGTH) {
+            final int lineLength = Math.min(LINE_LENGTH, end - offset);
+
+            System.arraycopy(array, offset, destination, d, lineLength);
+
+            d += lineLength;
+
+            if ((flags & Base64.CRLF) != 0) {
+                destination[d++] = '\r';
+            }
+
+            destination[d++] = '\n';
+        }
+
+        return d - destinationOffset;
+    }
+
+    @Override
+    public int encode(final byte[] source, final int sourceOffset, final int length,
+                      final char[] destination, final int destinationOffset, final int flags) {
+        final ByteBuffer encoded = getEncoder(flags).encode(ByteBuffer.wrap(source, sourceOffset, length));
+
+        final byte[] array = encoded.array();
+        final int end = encoded.limit();
+        final boolean wrap = (flags & Base64.NO_WRAP) == 0;
+
+        int d = destinationOffset;
+
+        for (int i = 0; i < end; i++) {
+            destination[d++] = (char) array[i];
+
+            if (wrap && ((i + 1) % LINE_LENGTH == 0 || i + 1 == end)) {
+                if ((flags & Base64.CRLF) != 0) {
+                    destination[d++] = '\r';
+                }
+
+                destination[d++] = '\n';
+            }
+        }
+
+        return d - destinationOffset;
+    }
+
+    private static java.util.Base64.Encoder getEncoder(final int flags) {
+        final java.util.Base64.Encoder encoder = (flags & Base64.URL_SAFE) != 0 ? java.util.Base64.getUrlEncoder() : java.util.Base64.getEncoder();
+
+        return (flags & Base64.NO_PADDING) != 0 ? encoder.withoutPadding() : encoder;
+    }
+}
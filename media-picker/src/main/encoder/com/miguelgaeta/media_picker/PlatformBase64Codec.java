@@ -0,0 +1,32 @@
+package com.miguelgaeta.media_picker;
+
+import android.util.Base64;
+
+/**
+ * {@link Base64Codec} that delegates to {@link Base64}, which always encodes
+ * into a freshly allocated array that is then copied into the destination.
+ */
+class PlatformBase64Codec implements Base64Codec {
+
+    @Override
+    public int encode(final byte[] source, final int sourceOffset, final int length,
+                      final byte[] destination, final int destinationOffset, final int flags) {
+        final byte[] encoded = Base64.encode(source, sourceOffset, length, flags);
+
+        System.arraycopy(encoded, 0, destination, destinationOffset, encoded.length);
+
+        return encoded.length;
+    }
+
+    @Override
+    public int encode(final byte[] source, final int sourceOffset, final int length,
+                      final char[] destination, final int destinationOffset, final int flags) {
+        final byte[] encoded = Base64.encode(source, sourceOffset, length, flags);
+
+        for (int i = 0; i < encoded.length; i++) {
+            destination[destinationOffset + i] = (char) encoded[i];
+        }
+
+        return encoded.length;
+    }
+}
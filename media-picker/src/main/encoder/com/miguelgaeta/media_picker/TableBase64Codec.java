@@ -0,0 +1,229 @@
+package com.miguelgaeta.media_picker;
+
+import android.util.Base64;
+
+/**
+ * {@link Base64Codec} that writes straight into the destination using precomputed
+ * tables that map every 12 bit value to its two output characters.  The main
+ * loop consumes six source bytes and emits eight characters per iteration.
+ *
+ * Only the {@link Base64} flag constants are used, which are inlined at compile
+ * time, so this class has no runtime dependency on the Android framework.
+ */
+class TableBase64Codec implements Base64Codec {
+
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    private static final char[] STANDARD = (ALPHABET + "+/").toCharArray();
+    private static final char[] URL_SAFE = (ALPHABET + "-_").toCharArray();
+
+    private static final char[] STANDARD_PAIRS = getPairs(STANDARD);
+    private static final char[] URL_SAFE_PAIRS = getPairs(URL_SAFE);
+
+    /**
+     * Source bytes per output line when wrapping, 76 characters.
+     */
+    private static final int LINE_SIZE = 57;
+
+    private static final char PAD = '=';
+
+    @Override
+    public int encode(final byte[] source, final int sourceOffset, final int length,
+                      final byte[] destination, final int destinationOffset, final int flags) {
+        final boolean urlSafe = (flags & Base64.URL_SAFE) != 0;
+        final char[] alphabet = urlSafe ? URL_SAFE : STANDARD;
+        final char[] pairs = urlSafe ? URL_SAFE_PAIRS : STANDARD_PAIRS;
+        final boolean pad = (flags & Base64.NO_PADDING) == 0;
+        final boolean wrap = (flags & Base64.NO_WRAP) == 0;
+        final boolean crlf = (flags & Base64.CRLF) != 0;
+
+        final int end = sourceOffset + length;
+
+        int s = sourceOffset;
+        int d = destinationOffset;
+
+        while (s < end) {
+            final int lineEnd = wrap ? Math.min(s + LINE_SIZE, end) : end;
+            final int wideEnd = s + (lineEnd - s) / 6 * 6;
+
+            while (s < wideEnd) {
+                final int bits0 = (source[s] & 0xff) << 16 | (source[s + 1] & 0xff) << 8 | (source[s + 2] & 0xff);
+                final int bits1 = (source[s + 3] & 0xff) << 16 | (source[s + 4] & 0xff) << 8 | (source[s + 5] & 0xff);
+
+                final char pair0 = pairs[bits0 >>> 12];
+                final char pair1 = pairs[bits0 & 0xfff];
+                final char pair2 = pairs[bits1 >>> 12];
+                final char pair3 = pairs[bits1 & 0xfff];
+
+                destination[d] = (byte) (pair0 >>> 8);
+                destination[d + 1] = (byte) pair0;
+                destination[d + 2] = (byte) (pair1 >>> 8);
+                destination[d + 3] = (byte) pair1;
+                destination[d + 4] = (byte) (pair2 >>> 8);
+                destination[d + 5] = (byte) pair2;
+                destination[d + 6] = (byte) (pair3 >>> 8);
+                destination[d + 7] = (byte) pair3;
+
+                s += 6;
+                d += 8;
+            }
+
+            if (lineEnd - s >= 3) {
+                final int bits = (source[s] & 0xff) << 16 | (source[s + 1] & 0xff) << 8 | (source[s + 2] & 0xff);
+
+                final char pair0 = pairs[bits >>> 12];
+                final char pair1 = pairs[bits & 0xfff];
+
+                destination[d] = (byte) (pair0 >>> 8);
+                destination[d + 1] = (byte) pair0;
+                destination[d + 2] = (byte) (pair1 >>> 8);
+                destination[d + 3] = (byte) pair1;
+
+                s += 3;
+                d += 4;
+            }
+
+            if (lineEnd - s == 1) {
+                final int bits = (source[s] & 0xff) << 16;
+
+                destination[d++] = (byte) alphabet[bits >>> 18];
+                destination[d++] = (byte) alphabet[(bits >>> 12) & 0x3f];
+
+                if (pad) {
+                    destination[d++] = PAD;
+                    destination[d++] = PAD;
+                }
+
+            } else if (lineEnd - s == 2) {
+                final int bits = (source[s] & 0xff) << 16 | (source[s + 1] & 0xff) << 8;
+
+                destination[d++] = (byte) alphabet[bits >>> 18];
+                destination[d++] = (byte) alphabet[(bits >>> 12) & 0x3f];
+                destination[d++] = (byte) alphabet[(bits >>> 6) & 0x3f];
+
+                if (pad) {
+                    destination[d++] = PAD;
+                }
+            }
+
+            s = lineEnd;
+
+            if (wrap) {
+                if (crlf) {
+                    destination[d++] = '\r';
+                }
+
+                destination[d++] = '\n';
+            }
+        }
+
+        return d - destinationOffset;
+    }
+
+    @Override
+    public int encode(final byte[] source, final int sourceOffset, final int length,
+                      final char[] destination, final int destinationOffset, final int flags) {
+        final boolean urlSafe = (flags & Base64.URL_SAFE) != 0;
+        final char[] alphabet = urlSafe ? URL_SAFE : STANDARD;
+        final char[] pairs = urlSafe ? URL_SAFE_PAIRS : STANDARD_PAIRS;
+        final boolean pad = (flags & Base64.NO_PADDING) == 0;
+        final boolean wrap = (flags & Base64.NO_WRAP) == 0;
+        final boolean crlf = (flags & Base64.CRLF) != 0;
+
+        final int end = sourceOffset + length;
+
+        int s = sourceOffset;
+        int d = destinationOffset;
+
+        while (s < end) {
+            final int lineEnd = wrap ? Math.min(s + LINE_SIZE, end) : end;
+            final int wideEnd = s + (lineEnd - s) / 6 * 6;
+
+            while (s < wideEnd) {
+                final int bits0 = (source[s] & 0xff) << 16 | (source[s + 1] & 0xff) << 8 | (source[s + 2] & 0xff);
+                final int bits1 = (source[s + 3] & 0xff) << 16 | (source[s + 4] & 0xff) << 8 | (source[s + 5] & 0xff);
+
+                final char pair0 = pairs[bits0 >>> 12];
+                final char pair1 = pairs[bits0 & 0xfff];
+                final char pair2 = pairs[bits1 >>> 12];
+                final char pair3 = pairs[bits1 & 0xfff];
+
+                destination[d] = (char) (pair0 >>> 8);
+                destination[d + 1] = (char) (pair0 & 0xff);
+                destination[d + 2] = (char) (pair1 >>> 8);
+                destination[d + 3] = (char) (pair1 & 0xff);
+                destination[d + 4] = (char) (pair2 >>> 8);
+                destination[d + 5] = (char) (pair2 & 0xff);
+                destination[d + 6] = (char) (pair3 >>> 8);
+                destination[d + 7] = (char) (pair3 & 0xff);
+
+                s += 6;
+                d += 8;
+            }
+
+            if (lineEnd - s >= 3) {
+                final int bits = (source[s] & 0xff) << 16 | (source[s + 1] & 0xff) << 8 | (source[s + 2] & 0xff);
+
+                final char pair0 = pairs[bits >>> 12];
+                final char pair1 = pairs[bits & 0xfff];
+
+                destination[d] = (char) (pair0 >>> 8);
+                destination[d + 1] = (char) (pair0 & 0xff);
+                destination[d + 2] = (char) (pair1 >>> 8);
+                destination[d + 3] = (char) (pair1 & 0xff);
+
+                s += 3;
+                d += 4;
+            }
+
+            if (lineEnd - s == 1) {
+                final int bits = (source[s] & 0xff) << 16;
+
+                destination[d++] = alphabet[bits >>> 18];
+                destination[d++] = alphabet[(bits >>> 12) & 0x3f];
+
+                if (pad) {
+                    destination[d++] = PAD;
+                    destination[d++] = PAD;
+                }
+
+            } else if (lineEnd - s == 2) {
+                final int bits = (source[s] & 0xff) << 16 | (source[s + 1] & 0xff) << 8;
+
+                destination[d++] = alphabet[bits >>> 18];
+                destination[d++] = alphabet[(bits >>> 12) & 0x3f];
+                destination[d++] = alphabet[(bits >>> 6) & 0x3f];
+
+                if (pad) {
+                    destination[d++] = PAD;
+                }
+            }
+
+            s = lineEnd;
+
+            if (wrap) {
+                if (crlf) {
+                    destination[d++] = '\r';
+                }
+
+                destination[d++] = '\n';
+            }
+        }
+
+        return d - destinationOffset;
+    }
+
+    /**
+     * Build a table mapping each 12 bit value to its two characters,
+     * packed as the high and low byte of a single char.
+     */
+    private static char[] getPairs(final char[] alphabet) {
+        final char[] pairs = new char[1 << 12];
+
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = (char) (alphabet[i >>> 6] << 8 | alphabet[i & 0x3f]);
+        }
+
+        return pairs;
+    }
+}
@@ -1,16 +1,22 @@
 package com.miguelgaeta.media_picker;
 
+import android.content.Context;
 import android.graphics.Bitmap;
+import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.util.Base64;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.Writer;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 
 /**
  * Created by Miguel Gaeta on 2/10/16.
@@ -18,6 +24,70 @@ import java.nio.ByteBuffer;
 @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
 public class Encoder {
 
+    /**
+     * Size of the pooled buffer used when streaming.  Each pass only encodes a multiple
+     * of the 57 byte line used when wrapping (itself a multiple of the three byte
+     * {@link Base64} quantum) so chunks concatenate to the same output as a single pass.
+     *
+     * @see #getChunkLength(byte[])
+     */
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private static final int LINE_SIZE = 57;
+
+    /**
+     * Largest number of source bytes handed to a {@link Base64Codec} at once.
+     */
+    private static final int MAX_CHUNK_LENGTH = CHUNK_SIZE - CHUNK_SIZE % LINE_SIZE;
+
+    private static volatile Base64Codec defaultCodec = Base64Codec.PLATFORM;
+
+    /**
+     * Compression quality used when only a mime type is provided for a {@link Bitmap}.
+     */
+    private static final int DEFAULT_BITMAP_QUALITY = 90;
+
+    /**
+     * Used when the mime type of content cannot be detected.
+     */
+    private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * Reports the encoding of every data url chunk as an encode phase.
+     */
+    private static final DataUrlChunker.Tracer CHUNK_TRACER = new DataUrlChunker.Tracer() {
+
+        @Override
+        public long start() {
+            return Metrics.start(MediaPickerMetrics.Phase.ENCODE);
+        }
+
+        @Override
+        public void end(final long start, final long bytes, final Throwable error) {
+            Metrics.end(MediaPickerMetrics.Phase.ENCODE, start, bytes, error);
+        }
+    };
+
+    /**
+     * Replace the {@link Base64Codec} used by every call that does not provide
+     * one explicitly, {@link Base64Codec#PLATFORM} unless changed.  Opt in to
+     * {@link Base64Codec#TABLE} here for faster encoding with identical output.
+     *
+     * @param codec Codec to use by default.
+     */
+    public static void setDefaultCodec(final @NonNull Base64Codec codec) {
+        defaultCodec = codec;
+    }
+
+    /**
+     * @see #setDefaultCodec(Base64Codec)
+     */
+    public static Base64Codec getDefaultCodec() {
+        return defaultCodec;
+    }
+
     /**
      * Fetch target {@link InputStream} as a data url representation with
      * associated {@link Byte} stream encoded as a {@link Base64} string.
@@ -31,36 +101,294 @@ public class Encoder {
      */
     public static String getDataUrl(final @NonNull String mimeType,
                                     final @NonNull InputStream inputStream) throws IOException {
-        final String template = "data:%s;base64,%s";
+        return getDataUrl(mimeType, inputStream, defaultCodec);
+    }
 
-        return String.format(template, mimeType, getBase64EncodedString(inputStream));
+    /**
+     * @see #getDataUrl(String, InputStream)
+     *
+     * @param codec {@link Base64Codec} used to encode the content.
+     */
+    public static String getDataUrl(final @NonNull String mimeType,
+                                    final @NonNull InputStream inputStream,
+                                    final @NonNull Base64Codec codec) throws IOException {
+        final StringBuilder output = new StringBuilder();
+
+        final ChunkWriter writer = ChunkWriter.create(output, codec, Base64.NO_WRAP);
+
+        try {
+            writer.writePrefix(getDataUrlPrefix(mimeType));
+
+            writeBase64EncodedString(inputStream, writer);
+
+        } finally {
+            writer.release();
+        }
+
+        return output.toString();
     }
 
+    /**
+     * Stream target {@link InputStream} as a data url into the provided {@link Appendable},
+     * such as a {@link Writer} or {@link StringBuilder}.  The source is encoded in
+     * fixed size chunks so memory use does not grow with the input size.
+     *
+     * @param mimeType Target mime type.
+     * @param inputStream Target {@link InputStream}.
+     * @param output Destination of the data url.
+     *
+     * @throws IOException Failure to read source or write result.
+     */
+    public static void writeDataUrl(final @NonNull String mimeType,
+                                    final @NonNull InputStream inputStream,
+                                    final @NonNull Appendable output) throws IOException {
+        final ChunkWriter writer = ChunkWriter.create(output, defaultCodec, Base64.NO_WRAP);
+
+        try {
+            writer.writePrefix(getDataUrlPrefix(mimeType));
+
+            writeBase64EncodedString(inputStream, writer);
+
+        } finally {
+            writer.release();
+        }
+    }
 
     /**
-     * @see #getDataUrl(String, InputStream)
+     * @see #writeDataUrl(String, InputStream, Appendable)
+     */
+    public static void writeDataUrl(final @NonNull String mimeType,
+                                    final @NonNull InputStream inputStream,
+                                    final @NonNull OutputStream output) throws IOException {
+        final ChunkWriter writer = ChunkWriter.create(output, defaultCodec, Base64.NO_WRAP);
+
+        try {
+            writer.writePrefix(getDataUrlPrefix(mimeType));
+
+            writeBase64EncodedString(inputStream, writer);
+
+        } finally {
+            writer.release();
+        }
+    }
+
+    /**
+     * Compress target {@link Bitmap} with the format matching the provided mime
+     * type (JPEG, PNG or WEBP) and fetch the result as a data url.
+     *
+     * @see #getDataUrl(Bitmap.CompressFormat, int, Bitmap)
      */
     public static String getDataUrl(final @NonNull String mimeType,
                                     final @NonNull Bitmap bitmap) throws IOException {
-        final int byteSize = bitmap.getRowBytes() * bitmap.getHeight();
+        return getDataUrl(getCompressFormat(mimeType), DEFAULT_BITMAP_QUALITY, bitmap);
+    }
 
-        final ByteBuffer byteBuffer = ByteBuffer.allocate(byteSize);
+    /**
+     * Compress target {@link Bitmap} and fetch the encoded image as a data url.  The
+     * compressed bytes are written into a recycled buffer and encoded in place,
+     * the raw pixel data is never copied.
+     *
+     * @param format Target compression format, also determines the mime type.
+     * @param quality Compression quality from 0 to 100, ignored by lossless formats.
+     * @param bitmap Source {@link Bitmap}.
+     *
+     * @return Associated data url.
+     *
+     * @throws IOException Failure to compress or encode result.
+     */
+    public static String getDataUrl(final @NonNull Bitmap.CompressFormat format,
+                                    final int quality,
+                                    final @NonNull Bitmap bitmap) throws IOException {
+        final PooledByteArrayOutputStream compressed = compress(format, quality, bitmap);
+
+        try {
+            final String prefix = getDataUrlPrefix(getMimeType(format));
+
+            final StringBuilder output = new StringBuilder(prefix.length() + (int) getEncodedLength(compressed.size(), Base64.NO_WRAP));
+
+            writeDataUrl(prefix, compressed, ChunkWriter.create(output, defaultCodec, Base64.NO_WRAP));
+
+            return output.toString();
+
+        } finally {
+            compressed.recycle();
+        }
+    }
 
-        bitmap.copyPixelsToBuffer(byteBuffer);
+    /**
+     * @see #getDataUrl(Bitmap.CompressFormat, int, Bitmap)
+     * @see #writeDataUrl(String, InputStream, OutputStream)
+     */
+    public static void writeDataUrl(final @NonNull Bitmap.CompressFormat format,
+                                    final int quality,
+                                    final @NonNull Bitmap bitmap,
+                                    final @NonNull OutputStream output) throws IOException {
+        final PooledByteArrayOutputStream compressed = compress(format, quality, bitmap);
 
-        final byte[] byteArray = byteBuffer.array();
+        try {
+            writeDataUrl(getDataUrlPrefix(getMimeType(format)), compressed, ChunkWriter.create(output, defaultCodec, Base64.NO_WRAP));
 
-        final InputStream inputStream = new ByteArrayInputStream(byteArray);
+        } finally {
+            compressed.recycle();
+        }
+    }
 
-        return getDataUrl(mimeType, inputStream);
+    /**
+     * @see #writeDataUrl(Bitmap.CompressFormat, int, Bitmap, OutputStream)
+     */
+    public static void writeDataUrl(final @NonNull Bitmap.CompressFormat format,
+                                    final int quality,
+                                    final @NonNull Bitmap bitmap,
+                                    final @NonNull Appendable output) throws IOException {
+        final PooledByteArrayOutputStream compressed = compress(format, quality, bitmap);
+
+        try {
+            writeDataUrl(getDataUrlPrefix(getMimeType(format)), compressed, ChunkWriter.create(output, defaultCodec, Base64.NO_WRAP));
+
+        } finally {
+            compressed.recycle();
+        }
     }
 
     /**
+     * Decode target image no larger than the provided dimension, recompress it and
+     * fetch the result as a data url.  Only the image bounds are read before
+     * decoding a subsampled copy, so full resolution camera captures are
+     * never held in memory or encoded.
+     *
+     * @param context Used to open the image.
+     * @param uri Source image {@link Uri}, such as one returned by {@link MediaPicker#handleActivityResult}.
+     * @param maxDimension Maximum width or height of the encoded image.
+     * @param format Target compression format, also determines the mime type.
+     * @param quality Compression quality from 0 to 100, ignored by lossless formats.
+     *
+     * @return Associated data url.
+     *
+     * @throws IOException Failure to decode, compress or encode the image.
+     */
+    public static String getScaledDataUrl(final @NonNull Context context,
+                                          final @NonNull Uri uri,
+                                          final int maxDimension,
+                                          final @NonNull Bitmap.CompressFormat format,
+                                          final int quality) throws IOException {
+        final Bitmap bitmap = ImageScaler.decodeScaled(context.getContentResolver(), uri, maxDimension);
+
+        try {
+            return getDataUrl(format, quality, bitmap);
+
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * @see #getScaledDataUrl(Context, Uri, int, Bitmap.CompressFormat, int)
+     * @see #writeDataUrl(Bitmap.CompressFormat, int, Bitmap, OutputStream)
+     */
+    public static void writeScaledDataUrl(final @NonNull Context context,
+                                          final @NonNull Uri uri,
+                                          final int maxDimension,
+                                          final @NonNull Bitmap.CompressFormat format,
+                                          final int quality,
+                                          final @NonNull OutputStream output) throws IOException {
+        final Bitmap bitmap = ImageScaler.decodeScaled(context.getContentResolver(), uri, maxDimension);
+
+        try {
+            writeDataUrl(format, quality, bitmap, output);
+
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * @see #writeScaledDataUrl(Context, Uri, int, Bitmap.CompressFormat, int, OutputStream)
+     */
+    public static void writeScaledDataUrl(final @NonNull Context context,
+                                          final @NonNull Uri uri,
+                                          final int maxDimension,
+                                          final @NonNull Bitmap.CompressFormat format,
+                                          final int quality,
+                                          final @NonNull Appendable output) throws IOException {
+        final Bitmap bitmap = ImageScaler.decodeScaled(context.getContentResolver(), uri, maxDimension);
+
+        try {
+            writeDataUrl(format, quality, bitmap, output);
+
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Fetch target {@link File} as a data url.  As the file length is known up front
+     * the result is sized exactly and the content is bulk read through
+     * a {@link FileChannel} that is always closed before returning.
+     *
      * @see #getDataUrl(String, InputStream)
      */
     public static String getDataUrl(final @NonNull String mimeType,
                                     final @NonNull File file) throws IOException  {
-        return getDataUrl(mimeType, new FileInputStream(file));
+        return getDataUrl(mimeType, file, defaultCodec);
+    }
+
+    /**
+     * @see #getDataUrl(String, File)
+     *
+     * @param codec {@link Base64Codec} used to encode the content.
+     */
+    public static String getDataUrl(final @NonNull String mimeType,
+                                    final @NonNull File file,
+                                    final @NonNull Base64Codec codec) throws IOException  {
+        final FileChannel channel = new FileInputStream(file).getChannel();
+
+        try {
+            final String prefix = getDataUrlPrefix(mimeType);
+
+            final long length = prefix.length() + getEncodedLength(channel.size(), Base64.NO_WRAP);
+
+            if (length > Integer.MAX_VALUE) {
+
+                throw new IOException("File is too large to encode as a data url: " + file);
+            }
+
+            final StringBuilder output = new StringBuilder((int) length);
+
+            final ChunkWriter writer = ChunkWriter.create(output, codec, Base64.NO_WRAP);
+
+            try {
+                writer.writePrefix(prefix);
+
+                writeBase64EncodedString(channel, writer);
+
+            } finally {
+                writer.release();
+            }
+
+            return output.toString();
+
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * @see #getDataUrl(String, File)
+     * @see #writeDataUrl(String, InputStream, OutputStream)
+     */
+    public static void writeDataUrl(final @NonNull String mimeType,
+                                    final @NonNull File file,
+                                    final @NonNull OutputStream output) throws IOException {
+        writeDataUrl(mimeType, file, ChunkWriter.create(output, defaultCodec, Base64.NO_WRAP));
+    }
+
+    /**
+     * @see #writeDataUrl(String, File, OutputStream)
+     */
+    public static void writeDataUrl(final @NonNull String mimeType,
+                                    final @NonNull File file,
+                                    final @NonNull Appendable output) throws IOException {
+        writeDataUrl(mimeType, file, ChunkWriter.create(output, defaultCodec, Base64.NO_WRAP));
     }
 
     /**
@@ -71,6 +399,67 @@ public class Encoder {
         return getDataUrl(mimeType, new File(filePath));
     }
 
+    /**
+     * Fetch target {@link File} as a data url, with the mime type detected
+     * from the signature at the start of its content.
+     *
+     * @see MimeTypeDetector#detect(File)
+     * @see #getDataUrl(String, File)
+     */
+    public static String getDataUrl(final @NonNull File file) throws IOException  {
+        final String mimeType = MimeTypeDetector.detect(file);
+
+        return getDataUrl(mimeType != null ? mimeType : DEFAULT_MIME_TYPE, file);
+    }
+
+    /**
+     * Fetch the content behind target {@link Uri} as a data url, with the mime type
+     * detected from the signature at the start of the stream being encoded, so
+     * the content is only opened once.
+     *
+     * @see MimeTypeDetector#detect(Context, Uri)
+     * @see #getDataUrl(String, InputStream)
+     */
+    public static String getDataUrl(final @NonNull Context context,
+                                    final @NonNull Uri uri) throws IOException  {
+        final InputStream source = context.getContentResolver().openInputStream(uri);
+
+        if (source == null) {
+
+            throw new IOException("Unable to open content: " + uri);
+        }
+
+        try {
+            final PushbackInputStream inputStream = new PushbackInputStream(source, MimeTypeDetector.HEADER_SIZE);
+
+            String mimeType = MimeTypeDetector.getCached(uri);
+
+            if (mimeType == null) {
+                final byte[] header = new byte[MimeTypeDetector.HEADER_SIZE];
+
+                int length = 0;
+                int bytesRead;
+
+                while (length < header.length && (bytesRead = inputStream.read(header, length, header.length - length)) != -1) {
+                    length += bytesRead;
+                }
+
+                inputStream.unread(header, 0, length);
+
+                mimeType = MimeTypeDetector.detect(header, length);
+
+                if (mimeType != null) {
+                    MimeTypeDetector.put(uri, mimeType);
+                }
+            }
+
+            return getDataUrl(mimeType != null ? mimeType : DEFAULT_MIME_TYPE, inputStream);
+
+        } finally {
+            source.close();
+        }
+    }
+
     /**
      * Fetch target {@link InputStream} as a {@link Base64} encoded string.
      *
@@ -82,25 +471,472 @@ public class Encoder {
      * @throws IOException Failure to encode result.
      */
     public static String getBase64EncodedString(final InputStream inputStream, final int flags) throws IOException {
-        final byte[] buffer = new byte[8192];
+        return getBase64EncodedString(inputStream, flags, defaultCodec);
+    }
+
+    /**
+     * @see #getBase64EncodedString(InputStream, int)
+     *
+     * @param codec {@link Base64Codec} used to encode the content.
+     */
+    public static String getBase64EncodedString(final InputStream inputStream, final int flags, final Base64Codec codec) throws IOException {
+        final StringBuilder output = new StringBuilder();
 
+        writeBase64EncodedString(inputStream, output, flags, codec);
+
+        return output.toString();
+    }
+
+    /**
+     * @see #getBase64EncodedString(InputStream, int)
+     */
+    public static String getBase64EncodedString(final InputStream inputStream) throws IOException {
+        return getBase64EncodedString(inputStream, Base64.NO_WRAP);
+    }
+
+    /**
+     * Stream target {@link InputStream} as {@link Base64} into the provided {@link OutputStream}
+     * without holding more than a single chunk of the source in memory.
+     *
+     * @param inputStream Target {@link InputStream}.
+     * @param output Destination of the encoded bytes.
+     * @param flags Target {@link Base64} encoding flags.
+     *
+     * @throws IOException Failure to read source or write result.
+     */
+    public static void writeBase64EncodedString(final @NonNull InputStream inputStream,
+                                                final @NonNull OutputStream output,
+                                                final int flags) throws IOException {
+        writeBase64EncodedString(inputStream, output, flags, defaultCodec);
+    }
+
+    /**
+     * @see #writeBase64EncodedString(InputStream, OutputStream, int)
+     *
+     * @param codec {@link Base64Codec} used to encode the content.
+     */
+    public static void writeBase64EncodedString(final @NonNull InputStream inputStream,
+                                                final @NonNull OutputStream output,
+                                                final int flags,
+                                                final @NonNull Base64Codec codec) throws IOException {
+        final ChunkWriter writer = ChunkWriter.create(output, codec, flags);
+
+        try {
+            writeBase64EncodedString(inputStream, writer);
+
+        } finally {
+            writer.release();
+        }
+    }
+
+    /**
+     * @see #writeBase64EncodedString(InputStream, OutputStream, int)
+     */
+    public static void writeBase64EncodedString(final @NonNull InputStream inputStream,
+                                                final @NonNull Appendable output,
+                                                final int flags) throws IOException {
+        writeBase64EncodedString(inputStream, output, flags, defaultCodec);
+    }
+
+    /**
+     * @see #writeBase64EncodedString(InputStream, OutputStream, int, Base64Codec)
+     */
+    public static void writeBase64EncodedString(final @NonNull InputStream inputStream,
+                                                final @NonNull Appendable output,
+                                                final int flags,
+                                                final @NonNull Base64Codec codec) throws IOException {
+        final ChunkWriter writer = ChunkWriter.create(output, codec, flags);
+
+        try {
+            writeBase64EncodedString(inputStream, writer);
+
+        } finally {
+            writer.release();
+        }
+    }
+
+    /**
+     * Lazily encode target {@link InputStream} as a data url split into chunks of at
+     * most the given number of characters, with the prefix only in the first.  The
+     * source is closed once the last chunk is read or the chunker is closed.
+     *
+     * @param mimeType Target mime type.
+     * @param inputStream Target {@link InputStream}.
+     * @param maxChunkLength Maximum length of each chunk in characters.
+     *
+     * @return Chunker returning each chunk on demand.
+     */
+    public static DataUrlChunker getDataUrlChunks(final @NonNull String mimeType,
+                                                  final @NonNull InputStream inputStream,
+                                                  final int maxChunkLength) {
+        return new DataUrlChunker(getDataUrlPrefix(mimeType), inputStream, maxChunkLength, defaultCodec, CHUNK_TRACER);
+    }
+
+    /**
+     * @see #getDataUrlChunks(String, InputStream, int)
+     */
+    public static DataUrlChunker getDataUrlChunks(final @NonNull String mimeType,
+                                                  final @NonNull File file,
+                                                  final int maxChunkLength) throws IOException {
+        return getDataUrlChunks(mimeType, new FileInputStream(file), maxChunkLength);
+    }
+
+    /**
+     * Encode target {@link InputStream} as a data url, delivering each chunk to
+     * the callback as soon as it has been encoded.
+     *
+     * @see #getDataUrlChunks(String, InputStream, int)
+     *
+     * @param onChunk Receives every chunk in order.
+     */
+    public static void writeDataUrlChunks(final @NonNull String mimeType,
+                                          final @NonNull InputStream inputStream,
+                                          final int maxChunkLength,
+                                          final @NonNull OnChunk onChunk) throws IOException {
+        final DataUrlChunker chunker = getDataUrlChunks(mimeType, inputStream, maxChunkLength);
+
+        try {
+            while (chunker.hasNext()) {
+                final String chunk = chunker.next();
+
+                onChunk.onChunk(chunk, !chunker.hasNext());
+            }
+
+        } finally {
+            chunker.close();
+        }
+    }
+
+    /**
+     * Compute the exact number of characters produced when encoding
+     * the given number of bytes with the provided {@link Base64} flags.
+     *
+     * @param length Source length in bytes.
+     * @param flags Target {@link Base64} encoding flags.
+     *
+     * @return Encoded length.
+     */
+    public static long getEncodedLength(final long length, final int flags) {
+        long encodedLength = (flags & Base64.NO_PADDING) != 0 ? (length * 4 + 2) / 3 : (length + 2) / 3 * 4;
+
+        if ((flags & Base64.NO_WRAP) == 0 && length > 0) {
+            final long lines = (length + 56) / 57;
+
+            encodedLength += lines * ((flags & Base64.CRLF) != 0 ? 2 : 1);
+        }
+
+        return encodedLength;
+    }
+
+    private static void writeDataUrl(final String mimeType, final File file, final ChunkWriter writer) throws IOException {
+        final FileChannel channel = new FileInputStream(file).getChannel();
+
+        try {
+            writer.writePrefix(getDataUrlPrefix(mimeType));
+
+            writeBase64EncodedString(channel, writer);
+
+        } finally {
+            writer.release();
+
+            channel.close();
+        }
+    }
+
+    private static void writeDataUrl(final String prefix, final PooledByteArrayOutputStream bytes, final ChunkWriter writer) throws IOException {
+        final long start = Metrics.start(MediaPickerMetrics.Phase.ENCODE);
+
+        Throwable error = null;
+
+        try {
+            writer.writePrefix(prefix);
+
+            for (int offset = 0; offset < bytes.size(); offset += MAX_CHUNK_LENGTH) {
+                writer.write(bytes.getBuffer(), offset, Math.min(MAX_CHUNK_LENGTH, bytes.size() - offset));
+            }
+
+        } catch (final IOException | RuntimeException e) {
+            error = e;
+
+            throw e;
+
+        } finally {
+            writer.release();
+
+            Metrics.end(MediaPickerMetrics.Phase.ENCODE, start, bytes.size(), error);
+        }
+    }
+
+    /**
+     * @see #writeBase64EncodedString(InputStream, OutputStream, int)
+     */
+    private static void writeBase64EncodedString(final InputStream inputStream, final ChunkWriter writer) throws IOException {
+        final byte[] buffer = BufferPool.acquireBytes(CHUNK_SIZE);
+        final int chunkLength = getChunkLength(buffer);
+
+        final long start = Metrics.start(MediaPickerMetrics.Phase.ENCODE);
+
+        long bytes = 0;
+        Throwable error = null;
+
+        try {
+            int bytesRead;
+
+            while ((bytesRead = readChunk(inputStream, buffer, chunkLength)) > 0) {
+                writer.write(buffer, 0, bytesRead);
+
+                bytes += bytesRead;
+
+                if (bytesRead < chunkLength) {
+                    break;
+                }
+            }
+
+        } catch (final IOException | RuntimeException e) {
+            error = e;
+
+            throw e;
+
+        } finally {
+            BufferPool.release(buffer);
+
+            Metrics.end(MediaPickerMetrics.Phase.ENCODE, start, bytes, error);
+        }
+    }
+
+    /**
+     * @see #writeBase64EncodedString(InputStream, OutputStream, int)
+     */
+    private static void writeBase64EncodedString(final FileChannel channel, final ChunkWriter writer) throws IOException {
+        final byte[] buffer = BufferPool.acquireBytes(CHUNK_SIZE);
+        final int chunkLength = getChunkLength(buffer);
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, chunkLength);
+
+        final long start = Metrics.start(MediaPickerMetrics.Phase.ENCODE);
+
+        long bytes = 0;
+        Throwable error = null;
+
+        try {
+            int bytesRead;
+
+            while ((bytesRead = readChunk(channel, byteBuffer, chunkLength)) > 0) {
+                writer.write(buffer, 0, bytesRead);
+
+                bytes += bytesRead;
+
+                if (bytesRead < chunkLength) {
+                    break;
+                }
+            }
+
+        } catch (final IOException | RuntimeException e) {
+            error = e;
+
+            throw e;
+
+        } finally {
+            BufferPool.release(buffer);
+
+            Metrics.end(MediaPickerMetrics.Phase.ENCODE, start, bytes, error);
+        }
+    }
+
+    private static PooledByteArrayOutputStream compress(final Bitmap.CompressFormat format,
+                                                        final int quality,
+                                                        final Bitmap bitmap) throws IOException {
+        final PooledByteArrayOutputStream output = PooledByteArrayOutputStream.obtain();
+
+        if (!bitmap.compress(format, quality, output)) {
+            output.recycle();
+
+            throw new IOException("Unable to compress bitmap as " + format + ".");
+        }
+
+        return output;
+    }
+
+    private static Bitmap.CompressFormat getCompressFormat(final @NonNull String mimeType) throws IOException {
+        switch (mimeType) {
+            case "image/jpeg":
+            case "image/jpg":
+                return Bitmap.CompressFormat.JPEG;
+            case "image/png":
+                return Bitmap.CompressFormat.PNG;
+            case "image/webp":
+                return Bitmap.CompressFormat.WEBP;
+        }
+
+        throw new IOException("Unsupported bitmap mime type: " + mimeType);
+    }
+
+    private static String getMimeType(final @NonNull Bitmap.CompressFormat format) {
+        switch (format) {
+            case PNG:
+                return "image/png";
+            case WEBP:
+                return "image/webp";
+            default:
+                return "image/jpeg";
+        }
+    }
+
+    private static String getDataUrlPrefix(final @NonNull String mimeType) {
+        return "data:" + mimeType + ";base64,";
+    }
+
+    /**
+     * @return Largest whole number of encoder lines that fit in the buffer.
+     */
+    private static int getChunkLength(final byte[] buffer) {
+        return Math.min(buffer.length - buffer.length % LINE_SIZE, MAX_CHUNK_LENGTH);
+    }
+
+    /**
+     * Fill the buffer from the source, only returning a partial chunk
+     * once the end of the stream has been reached.  Partial reads would
+     * otherwise introduce padding in the middle of the encoded output.
+     *
+     * @return Number of bytes read, zero when the stream is exhausted.
+     */
+    private static int readChunk(final InputStream inputStream, final byte[] buffer, final int chunkLength) throws IOException {
+        int total = 0;
         int bytesRead;
 
-        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        while (total < chunkLength && (bytesRead = inputStream.read(buffer, total, chunkLength - total)) != -1) {
+            total += bytesRead;
+        }
+
+        return total;
+    }
+
+    /**
+     * @see #readChunk(InputStream, byte[], int)
+     */
+    private static int readChunk(final FileChannel channel, final ByteBuffer byteBuffer, final int chunkLength) throws IOException {
+        byteBuffer.clear();
+        byteBuffer.limit(chunkLength);
 
-        while ((bytesRead = inputStream.read(buffer)) != -1) {
-            output.write(buffer, 0, bytesRead);
+        while (byteBuffer.hasRemaining() && channel.read(byteBuffer) != -1) {
+            // Keep filling until the chunk is complete or the file ends.
         }
 
-        final byte[] bytes = output.toByteArray();
+        return byteBuffer.position();
+    }
+
+    /**
+     * Encodes chunks of source bytes with a {@link Base64Codec} into a pooled scratch
+     * buffer and forwards the result to the destination.  Must be released once
+     * done so the scratch buffer can be reused.
+     */
+    private static abstract class ChunkWriter {
+
+        final Base64Codec codec;
+        final int flags;
+
+        ChunkWriter(final Base64Codec codec, final int flags) {
+            this.codec = codec;
+            this.flags = flags;
+        }
+
+        static ChunkWriter create(final OutputStream output, final Base64Codec codec, final int flags) {
+            return new ChunkWriter(codec, flags) {
+
+                private byte[] scratch;
+
+                @Override
+                void writePrefix(final String prefix) throws IOException {
+                    output.write(prefix.getBytes(ASCII));
+                }
+
+                @Override
+                void write(final byte[] source, final int offset, final int length) throws IOException {
+                    scratch = ensureCapacity(scratch, (int) getEncodedLength(length, flags));
+
+                    output.write(scratch, 0, codec.encode(source, offset, length, scratch, 0, flags));
+                }
+
+                @Override
+                void release() {
+                    BufferPool.release(scratch);
+
+                    scratch = null;
+                }
+            };
+        }
+
+        static ChunkWriter create(final Appendable output, final Base64Codec codec, final int flags) {
+            return new ChunkWriter(codec, flags) {
+
+                private char[] scratch;
+
+                @Override
+                void writePrefix(final String prefix) throws IOException {
+                    output.append(prefix);
+                }
 
-        return Base64.encodeToString(bytes, flags);
+                @Override
+                void write(final byte[] source, final int offset, final int length) throws IOException {
+                    scratch = ensureCapacity(scratch, (int) getEncodedLength(length, flags));
+
+                    final int encodedLength = codec.encode(source, offset, length, scratch, 0, flags);
+
+                    if (output instanceof StringBuilder) {
+                        ((StringBuilder) output).append(scratch, 0, encodedLength);
+
+                    } else if (output instanceof Writer) {
+                        ((Writer) output).write(scratch, 0, encodedLength);
+
+                    } else {
+                        output.append(CharBuffer.wrap(scratch, 0, encodedLength));
+                    }
+                }
+
+                @Override
+                void release() {
+                    BufferPool.release(scratch);
+
+                    scratch = null;
+                }
+            };
+        }
+
+        abstract void writePrefix(final String prefix) throws IOException;
+
+        /**
+         * Encode and forward a chunk, the length must be a multiple of
+         * the line size unless it is the final chunk.
+         */
+        abstract void write(final byte[] source, final int offset, final int length) throws IOException;
+
+        abstract void release();
+
+        private static byte[] ensureCapacity(final byte[] buffer, final int length) {
+            if (buffer != null && buffer.length >= length) {
+                return buffer;
+            }
+
+            BufferPool.release(buffer);
+
+            return BufferPool.acquireBytes(length);
+        }
+
+        private static char[] ensureCapacity(final char[] buffer, final int length) {
+            if (buffer != null && buffer.length >= length) {
+                return buffer;
+            }
+
+            BufferPool.release(buffer);
+
+            return BufferPool.acquireChars(length);
+        }
     }
 
     /**
-     * @see #getBase64EncodedString(InputStream, int)
+     * Receives the chunks of a data url in order.
      */
-    public static String getBase64EncodedString(final InputStream inputStream) throws IOException {
-        return getBase64EncodedString(inputStream, Base64.NO_WRAP);
+    public interface OnChunk {
+
+        void onChunk(final String chunk, final boolean last) throws IOException;
     }
 }
@@ -0,0 +1,261 @@
+package com.miguelgaeta.media_picker;
+
+import android.support.annotation.NonNull;
+import android.util.Base64;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Encodes several files as data urls concurrently.
+ *
+ * Work runs on a shared executor sized to the number of cores, and each item must
+ * reserve its estimated memory footprint from a budget before it starts, so a
+ * handful of large files cannot all be encoded at once.  Results and failures
+ * are delivered per item, through the returned futures and the callback, and
+ * the remaining work can be cancelled when it is no longer needed.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class EncoderBatch {
+
+    private static final int CORE_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        CORE_COUNT, CORE_COUNT, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final @NonNull Runnable runnable) {
+            final Thread thread = new Thread(runnable, "media-picker-encoder-" + count.incrementAndGet());
+
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+
+            return thread;
+        }
+    });
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private final List<ItemTask> tasks;
+
+    private EncoderBatch(final List<ItemTask> tasks) {
+        this.tasks = tasks;
+    }
+
+    /**
+     * Encode every item with a memory budget of a quarter of the maximum heap.
+     *
+     * @see #encode(List, long, Callback)
+     */
+    public static EncoderBatch encode(final @NonNull List<Item> items, final @NonNull Callback callback) {
+        return encode(items, Runtime.getRuntime().maxMemory() / 4, callback);
+    }
+
+    /**
+     * Start encoding every item as a data url.  An item larger than the whole
+     * budget is still encoded, but only once nothing else is running.
+     *
+     * @param items Items to encode.
+     * @param memoryBudget Maximum estimated bytes held by items encoding at once.
+     * @param callback Receives the outcome of every item on an encoder thread.
+     *
+     * @return Handle used to observe or cancel the batch.
+     */
+    public static EncoderBatch encode(final @NonNull List<Item> items, final long memoryBudget, final @NonNull Callback callback) {
+        final int budget = (int) Math.min(Integer.MAX_VALUE, Math.max(1, memoryBudget / 1024));
+
+        final Semaphore permits = new Semaphore(budget, true);
+        final AtomicInteger remaining = new AtomicInteger(items.size());
+
+        final List<ItemTask> tasks = new ArrayList<>(items.size());
+
+        for (int i = 0; i < items.size(); i++) {
+            tasks.add(new ItemTask(i, items.get(i), permits, budget, remaining, callback));
+        }
+
+        if (items.isEmpty()) {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    callback.onComplete();
+                }
+            });
+        }
+
+        for (final ItemTask task : tasks) {
+            executor.execute(task);
+        }
+
+        return new EncoderBatch(tasks);
+    }
+
+    /**
+     * @return Future data url of each item, in the order they were provided.
+     */
+    public List<Future<String>> getFutures() {
+        return Collections.<Future<String>>unmodifiableList(tasks);
+    }
+
+    /**
+     * Cancel every item that has not completed yet, interrupting the
+     * ones in progress.  Cancelled items receive no callback.
+     */
+    public void cancel() {
+        for (final ItemTask task : tasks) {
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * @return True once every item has either completed or been cancelled.
+     */
+    public boolean isDone() {
+        for (final ItemTask task : tasks) {
+            if (!task.isDone()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Estimated peak footprint in kilobytes of encoding a file, dominated
+     * by the UTF-16 result being built.
+     */
+    private static int getCost(final File file, final int budget) {
+        final long cost = Encoder.getEncodedLength(file.length(), Base64.NO_WRAP) * 2 / 1024;
+
+        return (int) Math.max(1, Math.min(cost, budget));
+    }
+
+    private static class ItemTask extends FutureTask<String> {
+
+        private final int index;
+        private final Item item;
+        private final AtomicInteger remaining;
+        private final Callback callback;
+
+        ItemTask(final int index,
+                 final Item item,
+                 final Semaphore permits,
+                 final int budget,
+                 final AtomicInteger remaining,
+                 final Callback callback) {
+            super(new Callable<String>() {
+
+                @Override
+                public String call() throws Exception {
+                    final int cost = getCost(item.file, budget);
+
+                    permits.acquire(cost);
+
+                    try {
+                        return Encoder.getDataUrl(item.mimeType, item.file);
+
+                    } finally {
+                        permits.release(cost);
+                    }
+                }
+            });
+
+            this.index = index;
+            this.item = item;
+            this.remaining = remaining;
+            this.callback = callback;
+        }
+
+        @Override
+        protected void done() {
+
+            // Cancellation completes on the thread calling cancel, hand it to an encoder thread.
+            if (isCancelled()) {
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        onDone();
+                    }
+                });
+
+                return;
+            }
+
+            try {
+                callback.onSuccess(index, item, get());
+
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+
+                callback.onError(index, item, cause instanceof IOException ? (IOException) cause : new IOException("Unable to encode " + item.file, cause));
+
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            onDone();
+        }
+
+        private void onDone() {
+            if (remaining.decrementAndGet() == 0) {
+                callback.onComplete();
+            }
+        }
+    }
+
+    /**
+     * Single file to encode along with its mime type.
+     */
+    public static final class Item {
+
+        private final String mimeType;
+        private final File file;
+
+        public Item(final @NonNull String mimeType, final @NonNull File file) {
+            this.mimeType = mimeType;
+            this.file = file;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public File getFile() {
+            return file;
+        }
+    }
+
+    /**
+     * Receives the outcome of each item in a batch as it completes,
+     * invoked on an encoder thread.
+     */
+    public interface Callback {
+
+        void onSuccess(final int index, final Item item, final String dataUrl);
+
+        void onError(final int index, final Item item, final IOException e);
+
+        /**
+         * Invoked once every item has completed, failed or been cancelled.
+         */
+        void onComplete();
+    }
+}
@@ -0,0 +1,375 @@
+package com.miguelgaeta.media_picker;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Base64;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded, least recently used disk cache of {@link Base64} encoded files.
+ *
+ * Entries are keyed by a hash of the file content computed while it is first
+ * encoded, so the same media picked twice is only ever encoded once.  A cheap
+ * key made of the path, size and modification time is remembered in memory
+ * for each hash, which lets repeat requests for an unchanged file skip
+ * hashing and turn into a single sequential read of the cached result.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class EncoderCache {
+
+    private static final String DIRECTORY_NAME = "media-picker-encoder";
+
+    private static final String ENTRY_SUFFIX = ".b64";
+
+    private static final int MAX_INDEX_ENTRIES = 512;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final File directory;
+
+    private final long maxBytes;
+
+    private final Map<String, String> index = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+            return size() > MAX_INDEX_ENTRIES;
+        }
+    };
+
+    /**
+     * @param directory Directory owned by the cache.
+     * @param maxBytes Maximum combined size of the cached entries.
+     */
+    public EncoderCache(final @NonNull File directory, final long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Create a cache stored in the application cache directory.
+     *
+     * @see #EncoderCache(File, long)
+     */
+    public static EncoderCache create(final @NonNull Context context, final long maxBytes) {
+        return new EncoderCache(new File(context.getCacheDir(), DIRECTORY_NAME), maxBytes);
+    }
+
+    /**
+     * Fetch target {@link File} as a data url, encoding and caching
+     * it first if the content has not been seen before.
+     *
+     * @see Encoder#getDataUrl(String, File)
+     */
+    public String getDataUrl(final @NonNull String mimeType, final @NonNull File file) throws IOException {
+        final FileInputStream entry = openEntry(file);
+
+        if (entry == null) {
+            return Encoder.getDataUrl(mimeType, file);
+        }
+
+        try {
+            final String prefix = "data:" + mimeType + ";base64,";
+
+            final long length = prefix.length() + entry.getChannel().size();
+
+            if (length > Integer.MAX_VALUE) {
+
+                throw new IOException("File is too large to encode as a data url: " + file);
+            }
+
+            final StringBuilder output = new StringBuilder((int) length);
+
+            output.append(prefix);
+
+            copy(entry, output);
+
+            return output.toString();
+
+        } finally {
+            entry.close();
+        }
+    }
+
+    /**
+     * @see #getDataUrl(String, File)
+     * @see Encoder#writeDataUrl(String, File, OutputStream)
+     */
+    public void writeDataUrl(final @NonNull String mimeType, final @NonNull File file, final @NonNull OutputStream output) throws IOException {
+        final InputStream inputStream = openEntry(file);
+
+        if (inputStream == null) {
+            Encoder.writeDataUrl(mimeType, file, output);
+
+            return;
+        }
+
+        final byte[] buffer = BufferPool.acquireBytes(BUFFER_SIZE);
+
+        try {
+            output.write(("data:" + mimeType + ";base64,").getBytes("US-ASCII"));
+
+            int bytesRead;
+
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, bytesRead);
+            }
+
+        } finally {
+            BufferPool.release(buffer);
+
+            inputStream.close();
+        }
+    }
+
+    /**
+     * @see #writeDataUrl(String, File, OutputStream)
+     */
+    public void writeDataUrl(final @NonNull String mimeType, final @NonNull File file, final @NonNull Appendable output) throws IOException {
+        final InputStream entry = openEntry(file);
+
+        if (entry == null) {
+            Encoder.writeDataUrl(mimeType, file, output);
+
+            return;
+        }
+
+        try {
+            output.append("data:").append(mimeType).append(";base64,");
+
+            copy(entry, output);
+
+        } finally {
+            entry.close();
+        }
+    }
+
+    /**
+     * Remove every cached entry.
+     */
+    public synchronized void clear() {
+        index.clear();
+
+        for (final File entry : getEntries()) {
+            //noinspection ResultOfMethodCallIgnored
+            entry.delete();
+        }
+    }
+
+    /**
+     * @return Combined size of the cached entries in bytes.
+     */
+    public synchronized long getSize() {
+        long size = 0;
+
+        for (final File entry : getEntries()) {
+            size += entry.length();
+        }
+
+        return size;
+    }
+
+    /**
+     * Open the cached entry for target file, encoding it on a miss.  Entries are
+     * opened while holding the lock, so a concurrent eviction only unlinks them.
+     *
+     * @return Open entry, or null when the encoded file would not fit in the cache.
+     */
+    private FileInputStream openEntry(final File file) throws IOException {
+        if (Encoder.getEncodedLength(file.length(), Base64.NO_WRAP) > maxBytes) {
+            return null;
+        }
+
+        final String key = file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+
+        synchronized (this) {
+            final String hash = index.get(key);
+
+            if (hash != null) {
+                final File entry = new File(directory, hash + ENTRY_SUFFIX);
+
+                if (entry.setLastModified(System.currentTimeMillis())) {
+                    return new FileInputStream(entry);
+                }
+
+                index.remove(key);
+            }
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+
+            throw new IOException("Unable to create cache directory: " + directory);
+        }
+
+        final File temp = File.createTempFile("encode", ".tmp", directory);
+
+        try {
+            final MessageDigest digest = getDigest();
+
+            final InputStream inputStream = new DigestInputStream(new FileInputStream(file), digest);
+            final OutputStream outputStream = new FileOutputStream(temp);
+
+            try {
+                Encoder.writeBase64EncodedString(inputStream, outputStream, Base64.NO_WRAP);
+
+            } finally {
+                outputStream.close();
+                inputStream.close();
+            }
+
+            final String hash = toHex(digest.digest());
+            final File entry = new File(directory, hash + ENTRY_SUFFIX);
+
+            synchronized (this) {
+                if (!entry.setLastModified(System.currentTimeMillis()) && !temp.renameTo(entry)) {
+
+                    throw new IOException("Unable to store encoded entry: " + entry);
+                }
+
+                index.put(key, hash);
+
+                final FileInputStream entryStream = new FileInputStream(entry);
+
+                trim(entry);
+
+                return entryStream;
+            }
+
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+    }
+
+    /**
+     * Evict the least recently used entries until the cache fits its budget.
+     *
+     * @param keep Entry just stored, never evicted.
+     */
+    private void trim(final File keep) {
+        final File[] entries = getEntries();
+
+        long size = 0;
+
+        for (final File entry : entries) {
+            size += entry.length();
+        }
+
+        if (size <= maxBytes) {
+            return;
+        }
+
+        Arrays.sort(entries, new Comparator<File>() {
+
+            @Override
+            public int compare(final File lhs, final File rhs) {
+                final long lhsModified = lhs.lastModified();
+                final long rhsModified = rhs.lastModified();
+
+                return lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+            }
+        });
+
+        for (final File entry : entries) {
+            if (size <= maxBytes) {
+                break;
+            }
+
+            if (entry.equals(keep)) {
+                continue;
+            }
+
+            final long length = entry.length();
+
+            if (entry.delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private File[] getEntries() {
+        final File[] entries = directory.listFiles();
+
+        if (entries == null) {
+            return new File[0];
+        }
+
+        int count = 0;
+
+        for (final File entry : entries) {
+            if (entry.getName().endsWith(ENTRY_SUFFIX)) {
+                entries[count++] = entry;
+            }
+        }
+
+        return Arrays.copyOf(entries, count);
+    }
+
+    /**
+     * Append the ASCII content of a cached entry.
+     */
+    private static void copy(final InputStream inputStream, final Appendable output) throws IOException {
+        final byte[] bytes = BufferPool.acquireBytes(BUFFER_SIZE);
+        final char[] chars = BufferPool.acquireChars(BUFFER_SIZE);
+
+        try {
+            int bytesRead;
+
+            while ((bytesRead = inputStream.read(bytes, 0, BUFFER_SIZE)) != -1) {
+                for (int i = 0; i < bytesRead; i++) {
+                    chars[i] = (char) bytes[i];
+                }
+
+                if (output instanceof StringBuilder) {
+                    ((StringBuilder) output).append(chars, 0, bytesRead);
+
+                } else if (output instanceof Writer) {
+                    ((Writer) output).write(chars, 0, bytesRead);
+
+                } else {
+                    output.append(new String(chars, 0, bytesRead));
+                }
+            }
+
+        } finally {
+            BufferPool.release(bytes);
+            BufferPool.release(chars);
+        }
+    }
+
+    private static MessageDigest getDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+
+        } catch (final NoSuchAlgorithmException e) {
+
+            throw new IOException("Content hash is not available.", e);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final char[] digits = "0123456789abcdef".toCharArray();
+        final char[] hex = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = digits[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = digits[bytes[i] & 0xf];
+        }
+
+        return new String(hex);
+    }
+}
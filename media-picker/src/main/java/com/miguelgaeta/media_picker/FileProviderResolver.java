@@ -0,0 +1,60 @@
+package com.miguelgaeta.media_picker;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps {@link android.support.v4.content.FileProvider} Uris straight to files
+ * from the provider path configuration, without querying the provider.
+ *
+ * Such Uris are made of the name of a configured path followed by the
+ * location of the file relative to the directory of that path.
+ */
+class FileProviderResolver implements UriResolver {
+
+    private final Map<String, File> roots;
+
+    /**
+     * @param roots Directories keyed by the name of the path they are configured under.
+     */
+    FileProviderResolver(final Map<String, File> roots) {
+        this.roots = new HashMap<>(roots);
+    }
+
+    @Override
+    public String getPath(final @NonNull Context context, final @NonNull Uri uri) throws IOException {
+        final List<String> segments = uri.getPathSegments();
+
+        if (segments.size() < 2) {
+            return null;
+        }
+
+        final File root = roots.get(segments.get(0));
+
+        if (root == null) {
+            return null;
+        }
+
+        final StringBuilder path = new StringBuilder(root.getPath());
+
+        for (int i = 1; i < segments.size(); i++) {
+            path.append(File.separatorChar).append(segments.get(i));
+        }
+
+        final File file = new File(path.toString()).getCanonicalFile();
+
+        if (!file.getPath().startsWith(root.getCanonicalPath() + File.separator)) {
+
+            throw new IOException("File provider path resolves outside of its root: " + uri);
+        }
+
+        return file.getPath();
+    }
+}
@@ -0,0 +1,210 @@
+package com.miguelgaeta.media_picker;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes images no larger than a target dimension.  Only the bounds are read
+ * first, the pixels are then decoded with a power of two sample size and
+ * scaled the rest of the way while applying the EXIF orientation.
+ */
+class ImageScaler {
+
+    /**
+     * Decode target image so that its largest side is at most the provided dimension.
+     *
+     * @param contentResolver Used to open the image.
+     * @param uri Source image {@link Uri}, content or file scheme.
+     * @param maxDimension Maximum width or height of the result.
+     *
+     * @return Decoded {@link Bitmap}, owned by the caller.
+     *
+     * @throws IOException Failure to read or decode the image.
+     */
+    static Bitmap decodeScaled(final @NonNull ContentResolver contentResolver,
+                               final @NonNull Uri uri,
+                               final int maxDimension) throws IOException {
+        if (maxDimension <= 0) {
+
+            throw new IOException("Maximum dimension must be positive: " + maxDimension);
+        }
+
+        final BitmapFactory.Options options = decodeBounds(contentResolver, uri);
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, maxDimension);
+
+        final Bitmap sampled = decodeStream(contentResolver, uri, options);
+
+        if (sampled == null) {
+
+            throw new IOException("Unable to decode image: " + uri);
+        }
+
+        final Matrix matrix = new Matrix();
+
+        final float scale = (float) maxDimension / Math.max(sampled.getWidth(), sampled.getHeight());
+
+        if (scale < 1) {
+            matrix.postScale(scale, scale);
+        }
+
+        applyOrientation(matrix, getOrientation(contentResolver, uri));
+
+        if (matrix.isIdentity()) {
+            return sampled;
+        }
+
+        final Bitmap scaled = Bitmap.createBitmap(sampled, 0, 0, sampled.getWidth(), sampled.getHeight(), matrix, true);
+
+        if (scaled != sampled) {
+            sampled.recycle();
+        }
+
+        return scaled;
+    }
+
+    /**
+     * Read the image dimensions without decoding any pixels.
+     *
+     * @return Options holding the dimensions in {@link BitmapFactory.Options#outWidth}
+     * and {@link BitmapFactory.Options#outHeight}.
+     *
+     * @throws IOException Failure to read the image or to find its dimensions.
+     */
+    static BitmapFactory.Options decodeBounds(final @NonNull ContentResolver contentResolver, final @NonNull Uri uri) throws IOException {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+
+        options.inJustDecodeBounds = true;
+
+        decodeStream(contentResolver, uri, options);
+
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+
+            throw new IOException("Unable to decode image bounds: " + uri);
+        }
+
+        return options;
+    }
+
+    /**
+     * @return Clockwise rotation in degrees described by the EXIF orientation of the image.
+     */
+    static int getRotation(final @NonNull ContentResolver contentResolver, final @NonNull Uri uri) {
+        switch (getOrientation(contentResolver, uri)) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                return 90;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                return 180;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return Largest power of two sample size that keeps the
+     * longest side at or above the target dimension.
+     */
+    private static int getSampleSize(final int width, final int height, final int maxDimension) {
+        final int longestSide = Math.max(width, height);
+
+        int sampleSize = 1;
+
+        while (longestSide / (sampleSize * 2) >= maxDimension) {
+            sampleSize *= 2;
+        }
+
+        return sampleSize;
+    }
+
+    private static Bitmap decodeStream(final ContentResolver contentResolver,
+                                       final Uri uri,
+                                       final BitmapFactory.Options options) throws IOException {
+        final InputStream inputStream = contentResolver.openInputStream(uri);
+
+        if (inputStream == null) {
+
+            throw new IOException("Unable to open image: " + uri);
+        }
+
+        try {
+            return BitmapFactory.decodeStream(inputStream, null, options);
+
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Read the EXIF orientation, from the path for file Uris and
+     * from the content itself where the platform supports it.
+     */
+    private static int getOrientation(final ContentResolver contentResolver, final Uri uri) {
+        try {
+            if (ContentResolver.SCHEME_FILE.equals(uri.getScheme()) && uri.getPath() != null) {
+                return new ExifInterface(uri.getPath()).getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            }
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                final InputStream inputStream = contentResolver.openInputStream(uri);
+
+                if (inputStream != null) {
+                    try {
+                        return new ExifInterface(inputStream).getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+
+                    } finally {
+                        inputStream.close();
+                    }
+                }
+            }
+
+        } catch (final IOException ignored) {
+
+            // Orientation is best effort, the image is used as decoded.
+        }
+
+        return ExifInterface.ORIENTATION_NORMAL;
+    }
+
+    private static void applyOrientation(final Matrix matrix, final int orientation) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(-90);
+                break;
+        }
+    }
+}
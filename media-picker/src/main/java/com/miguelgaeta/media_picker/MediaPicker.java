@@ -2,11 +2,10 @@ package com.miguelgaeta.media_picker;
 
 import android.app.Activity;
 import android.content.ActivityNotFoundException;
+import android.content.ClipData;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.content.pm.PackageManager;
-import android.content.pm.ResolveInfo;
 import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Build;
@@ -20,7 +19,12 @@ import com.yalantis.ucrop.UCrop;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by Miguel Gaeta on 2/10/16.
@@ -28,6 +32,44 @@ import java.util.List;
 @SuppressWarnings({"UnusedDeclaration", "DefaultFileTemplate", "JavadocReference", "WeakerAccess", "SameParameterValue"})
 public class MediaPicker {
 
+    /**
+     * Start of the external activity of each request code, only
+     * tracked while a metrics listener is installed.
+     */
+    private static final Map<Integer, Long> activityStarts = new HashMap<>();
+
+    /**
+     * Install a listener receiving the timing of every phase of the picker
+     * pipeline, from building the chooser to encoding the result.
+     *
+     * @see TraceMetrics
+     *
+     * @param metrics Listener, or null to remove it.
+     */
+    public static void setMetrics(final @Nullable MediaPickerMetrics metrics) {
+        Metrics.setListener(metrics);
+
+        synchronized (activityStarts) {
+            activityStarts.clear();
+        }
+    }
+
+    /**
+     * Resolve the applications offered for target mime types on a background
+     * thread, typically at application start, so the first chooser or picker
+     * opens without querying the package manager.  The resolutions are kept
+     * until a package is installed, removed or changed.  The storage volumes
+     * picked documents may live on are indexed at the same time.
+     *
+     * @param context Android application or activity context.
+     * @param mimeTypes Mime type filters that will be used.
+     */
+    public static void prewarm(final @NonNull Context context, final @NonNull String... mimeTypes) {
+        MediaPickerChooser.prewarm(context, mimeTypes);
+
+        StorageVolumeIndex.prewarm(context);
+    }
+
     /**
      * Create a chooser intent that matches all types of activities
      * for taking photos or selecting media.
@@ -39,16 +81,17 @@ public class MediaPicker {
      */
     public static void openMediaChooser(final Provider provider, final String title, final OnError onError, final String mimeType) {
         try {
-            final Uri captureFileURI = createTempImageFileAndPersistUri(provider);
+            final File captureFile = provider.getImageFile();
+            final Uri captureFileURI = getCaptureFileUri(provider.getContext(), captureFile);
 
-            final Intent intent = MediaPickerChooser.getMediaChooserIntent(provider.getContext().getPackageManager(), title, captureFileURI, mimeType);
+            final Intent intent = MediaPickerChooser.getMediaChooserIntent(provider.getContext(), title, captureFileURI, mimeType);
 
             final Intent cameraIntent = new Intent(android.provider.MediaStore.ACTION_IMAGE_CAPTURE);
 
-            // Grant camera write access just in case user chooses it.
-            grantWriteAccessToURI(provider.getContext(), cameraIntent, captureFileURI);
+            final int requestCode = MediaPickerRequests.register(provider.getContext(), RequestType.CHOOSER, captureFile.toURI().toString());
 
-            startFor(provider, intent, RequestType.CHOOSER.getCode());
+            // Grant camera write access just in case user chooses it.
+            startFor(provider, intent, requestCode, cameraIntent, captureFileURI);
 
         } catch (final IOException e) {
 
@@ -87,16 +130,17 @@ public class MediaPicker {
      */
     public static void startForCamera(final Provider provider, final OnError onError) {
         try {
-            final Uri captureFileURI = createTempImageFileAndPersistUri(provider);
+            final File captureFile = provider.getImageFile();
+            final Uri captureFileURI = getCaptureFileUri(provider.getContext(), captureFile);
 
             final Intent intent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE)
                 .putExtra(MediaStore.EXTRA_OUTPUT, captureFileURI)
                 .addFlags(Intent.FLAG_GRANT_WRITE_URI_PERMISSION)
                 .addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
 
-            grantWriteAccessToURI(provider.getContext(), intent, captureFileURI);
+            final int requestCode = MediaPickerRequests.register(provider.getContext(), RequestType.CAMERA, captureFile.toURI().toString());
 
-            startFor(provider, intent, RequestType.CAMERA.getCode());
+            startFor(provider, intent, requestCode, intent, captureFileURI);
 
         } catch (final IOException e) {
 
@@ -112,11 +156,24 @@ public class MediaPicker {
      * @param mimeType Mime type filter.
      */
     public static void startForGallery(final Provider provider, final OnError onError, final String mimeType) {
+        startForGallery(provider, onError, mimeType, false);
+    }
+
+    /**
+     * Start the gallery application directly, optionally letting the user select several
+     * items at once, to be handled with {@link #handleActivityResultsAsync(Provider, int, int, Intent, OnResolvedResults)}.
+     *
+     * @param provider {@link Provider}
+     * @param onError {@link OnError}
+     * @param mimeType Mime type filter.
+     * @param allowMultiple Whether several items can be selected, on API 18+.
+     */
+    public static void startForGallery(final Provider provider, final OnError onError, final String mimeType, final boolean allowMultiple) {
         try {
 
-            final Intent intent = getIntent(Intent.ACTION_PICK, mimeType);
+            final Intent intent = getIntent(Intent.ACTION_PICK, mimeType, allowMultiple);
 
-            startFor(provider, intent, RequestType.GALLERY.getCode());
+            startFor(provider, intent, MediaPickerRequests.obtain(provider.getContext(), RequestType.GALLERY));
 
         } catch (final IOException e) {
 
@@ -139,12 +196,25 @@ public class MediaPicker {
      * @param mimeType Mime type filter.
      */
     public static void startForDocuments(final Provider provider, final OnError onError, final String mimeType) {
+        startForDocuments(provider, onError, mimeType, false);
+    }
+
+    /**
+     * Start the documents chooser directly, optionally letting the user select several
+     * items at once, to be handled with {@link #handleActivityResultsAsync(Provider, int, int, Intent, OnResolvedResults)}.
+     *
+     * @param provider Source {@link Provider}.
+     * @param onError {@link OnError}
+     * @param mimeType Mime type filter.
+     * @param allowMultiple Whether several items can be selected, on API 18+.
+     */
+    public static void startForDocuments(final Provider provider, final OnError onError, final String mimeType, final boolean allowMultiple) {
 
         try {
 
-            final Intent intent = getIntent(Intent.ACTION_GET_CONTENT, mimeType);
+            final Intent intent = getIntent(Intent.ACTION_GET_CONTENT, mimeType, allowMultiple);
 
-            startFor(provider, intent, RequestType.DOCUMENTS.getCode());
+            startFor(provider, intent, MediaPickerRequests.obtain(provider.getContext(), RequestType.DOCUMENTS));
 
         } catch (final IOException e) {
 
@@ -196,7 +266,7 @@ public class MediaPicker {
             final Context context = provider.getContext();
 
             //TODO: replace this with directly using a FileProvider URI once UCrop can handle it.
-            final Uri destUri = Uri.fromFile(provider.getImageFile());
+            final Uri destUri = Uri.fromFile(MediaPickerCache.createCropFile(context));
 
             final UCrop uCrop = UCrop.of(uri, destUri);
             uCrop.withOptions(cropOptions);
@@ -204,9 +274,7 @@ public class MediaPicker {
 
             final Intent intent = uCrop.getIntent(context);
 
-            grantWriteAccessToURI(context, intent, destUri);
-
-            startFor(provider, intent, RequestType.CROP.getCode());
+            startFor(provider, intent, MediaPickerRequests.register(context, RequestType.CROP, destUri.toString()), intent, destUri);
 
         } catch (final IOException e) {
 
@@ -223,21 +291,56 @@ public class MediaPicker {
      * @param requestCode Request code for capturing result.
      */
     private static void startFor(final Provider provider, final Intent intent, final int requestCode) throws IOException {
+        startFor(provider, intent, requestCode, null, null);
+    }
+
+    /**
+     * @see #startFor(Provider, Intent, int)
+     *
+     * @param grantIntent Intent resolving the packages that receive access to the granted Uri.
+     * @param grantUri Uri the started activity writes to, access is revoked once the request returns.
+     */
+    private static void startFor(final Provider provider,
+                                 final Intent intent,
+                                 final int requestCode,
+                                 final @Nullable Intent grantIntent,
+                                 final @Nullable Uri grantUri) throws IOException {
+
+        if (provider == null) {
+            return;
+        }
+
+        final Context context = provider.getContext();
+
+        if (grantIntent != null && grantUri != null) {
+            UriGrants.grant(context, requestCode, grantIntent, grantUri);
+        }
 
         try {
 
-            if (provider != null) {
-                provider.startActivityForResult(intent, requestCode);
+            provider.startActivityForResult(intent, requestCode);
+
+            final long start = Metrics.start(MediaPickerMetrics.Phase.EXTERNAL_ACTIVITY);
+
+            if (start != 0) {
+                synchronized (activityStarts) {
+                    activityStarts.put(requestCode, start);
+                }
             }
 
         } catch (final ActivityNotFoundException e) {
 
+            UriGrants.revoke(context, requestCode);
+
+            MediaPickerRequests.remove(context, requestCode);
+
             throw new IOException("No application available for media picker.");
         }
     }
 
     /**
-     * Handle result of one of the defined start actions.
+     * Handle result of one of the defined start actions.  A result with several
+     * selected items is reported as an error, see {@link #handleActivityResultsAsync}.
      *
      * @param context Used to resolve resulting file.
      * @param requestCode Request code, should be defined.
@@ -247,16 +350,26 @@ public class MediaPicker {
      */
     public static void handleActivityResult(final Context context, final int requestCode, final int resultCode, final Intent data, final OnResult result) {
 
-        final RequestType request = RequestType.create(requestCode);
+        final RequestType request = MediaPickerRequests.getRequest(context, requestCode);
 
         if (request == null) {
             return;
         }
 
+        endExternalActivity(requestCode, resultCode);
+
+        UriGrants.revoke(context, requestCode);
+
+        final Uri captureFileUri = getCaptureFileUriAndClear(context, requestCode);
+
+        final long start = Metrics.start(MediaPickerMetrics.Phase.HANDLE_RESULT);
+
+        IOException error = null;
+
         try {
             switch (resultCode) {
                 case Activity.RESULT_OK:
-                    final Uri uri = handleActivityUriResult(context, request, data);
+                    final Uri uri = handleActivityUriResult(request, data, captureFileUri);
                     refreshSystemMediaScanDataBase(context, uri);
                     result.onSuccess(uri, request);
                     break;
@@ -270,28 +383,336 @@ public class MediaPicker {
             }
 
         } catch (final IOException e) {
+            error = e;
+
             result.onError(e);
+
+        } finally {
+            Metrics.end(MediaPickerMetrics.Phase.HANDLE_RESULT, start, -1, error);
+        }
+    }
+
+    /**
+     * Report the time spent in the external activity of a request, if its start was tracked.
+     */
+    private static void endExternalActivity(final int requestCode, final int resultCode) {
+        final Long start;
+
+        synchronized (activityStarts) {
+            start = activityStarts.remove(requestCode);
+        }
+
+        if (start != null) {
+            Metrics.end(MediaPickerMetrics.Phase.EXTERNAL_ACTIVITY, start, -1,
+                resultCode == Activity.RESULT_OK || resultCode == Activity.RESULT_CANCELED ? null : new IOException("Bad activity result code: " + resultCode));
+        }
+    }
+
+    /**
+     * Handle result of one of the defined start actions without blocking the main thread.
+     *
+     * Extracting the result and resolving its file, mime type and size run on a
+     * background thread, the outcome is then delivered on the main thread.  When
+     * the provider is a {@link android.arch.lifecycle.LifecycleOwner} the work is
+     * cancelled once it is destroyed, unless destroyed by a configuration change,
+     * the outcome is then held for {@link #resumeResultAsync(Provider, OnResolvedResult)}.
+     * Must be called on the main thread.
+     *
+     * @see #handleActivityResult(Context, int, int, Intent, OnResult)
+     *
+     * @param provider Source {@link Provider}.
+     * @param requestCode Request code, should be defined.
+     * @param resultCode Result code.
+     * @param data Data containing the result.
+     * @param result Result callbacks, invoked on the main thread.
+     *
+     * @return Handle to cancel the work, or null if the request code is not a picker request.
+     */
+    @Nullable
+    public static MediaPickerTask handleActivityResultAsync(final Provider provider,
+                                                           final int requestCode,
+                                                           final int resultCode,
+                                                           final Intent data,
+                                                           final OnResolvedResult result) {
+
+        final RequestType request = MediaPickerRequests.getRequest(provider.getContext(), requestCode);
+
+        if (request == null) {
+            return null;
+        }
+
+        endExternalActivity(requestCode, resultCode);
+
+        final MediaPickerTask task = new MediaPickerTask(OnResolvedResult.class, result);
+
+        if (resultCode == Activity.RESULT_CANCELED) {
+            UriGrants.revoke(provider.getContext(), requestCode);
+
+            getCaptureFileUriAndClear(provider.getContext(), requestCode);
+
+            result.onCancelled();
+
+            return task;
+        }
+
+        if (resultCode != Activity.RESULT_OK) {
+            UriGrants.revoke(provider.getContext(), requestCode);
+
+            getCaptureFileUriAndClear(provider.getContext(), requestCode);
+
+            result.onError(new IOException("Bad activity result code: " + resultCode + ", for request code: " + requestCode));
+
+            return task;
+        }
+
+        final Context context = provider.getContext().getApplicationContext();
+
+        task.bind(provider);
+
+        MediaPickerExecutor.getBackground().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                UriGrants.revoke(context, requestCode);
+
+                final Uri captureFileUri = getCaptureFileUriAndClear(context, requestCode);
+
+                if (task.isCancelled()) {
+                    deliver(task, null);
+
+                    return;
+                }
+
+                final long start = Metrics.start(MediaPickerMetrics.Phase.HANDLE_RESULT);
+
+                MediaPickerResult resolved = null;
+                IOException error = null;
+
+                try {
+                    final Uri uri = handleActivityUriResult(request, data, captureFileUri);
+
+                    if (uri == null) {
+
+                        throw new IOException("Picker returned no data result.");
+                    }
+
+                    refreshSystemMediaScanDataBase(context, uri);
+
+                    resolved = MediaPickerResult.resolve(context, uri, request);
+
+                } catch (final IOException e) {
+
+                    error = e;
+                }
+
+                Metrics.end(MediaPickerMetrics.Phase.HANDLE_RESULT, start, resolved != null && start != 0 ? resolved.getSize() : -1, error);
+
+                final MediaPickerResult resolvedResult = resolved;
+                final IOException resolveError = error;
+
+                deliver(task, new MediaPickerTask.Outcome() {
+
+                    @Override
+                    public void deliver(final Object callback) {
+                        if (resolveError != null) {
+                            ((OnResolvedResult) callback).onError(resolveError);
+
+                        } else {
+                            ((OnResolvedResult) callback).onSuccess(resolvedResult);
+                        }
+                    }
+                });
+            }
+        });
+
+        return task;
+    }
+
+    /**
+     * Resume delivering the outcome of {@link #handleActivityResultAsync(Provider, int, int, Intent, OnResolvedResult)}
+     * to a provider recreated by a configuration change while the result was being
+     * resolved.  Call it once the new instance is created, like from {@code onCreate}.
+     * Must be called on the main thread.
+     *
+     * @param provider Recreated {@link Provider}, of the same type as the destroyed one.
+     * @param result Result callbacks, invoked on the main thread.
+     *
+     * @return Handle to cancel the work, or null if no outcome is waiting for this type of provider.
+     */
+    @Nullable
+    public static MediaPickerTask resumeResultAsync(final Provider provider, final OnResolvedResult result) {
+
+        return MediaPickerTask.resume(provider, OnResolvedResult.class, result);
+    }
+
+    /**
+     * @see #resumeResultAsync(Provider, OnResolvedResult)
+     * @see #handleActivityResultsAsync(Provider, int, int, Intent, OnResolvedResults)
+     */
+    @Nullable
+    public static MediaPickerTask resumeResultsAsync(final Provider provider, final OnResolvedResults results) {
+
+        return MediaPickerTask.resume(provider, OnResolvedResults.class, results);
+    }
+
+    /**
+     * Handle result of a start action that allowed selecting several items, without
+     * blocking the main thread.  Files of every item are resolved together, with
+     * a single query per collection, and delivered in one callback.
+     *
+     * @see #handleActivityResultAsync(Provider, int, int, Intent, OnResolvedResult)
+     *
+     * @param provider Source {@link Provider}.
+     * @param requestCode Request code, should be defined.
+     * @param resultCode Result code.
+     * @param data Data containing the results.
+     * @param results Result callbacks, invoked on the main thread.
+     *
+     * @return Handle to cancel the work, or null if the request code is not a picker request.
+     */
+    @Nullable
+    public static MediaPickerTask handleActivityResultsAsync(final Provider provider,
+                                                            final int requestCode,
+                                                            final int resultCode,
+                                                            final Intent data,
+                                                            final OnResolvedResults results) {
+
+        final RequestType request = MediaPickerRequests.getRequest(provider.getContext(), requestCode);
+
+        if (request == null) {
+            return null;
+        }
+
+        endExternalActivity(requestCode, resultCode);
+
+        final MediaPickerTask task = new MediaPickerTask(OnResolvedResults.class, results);
+
+        if (resultCode == Activity.RESULT_CANCELED) {
+            UriGrants.revoke(provider.getContext(), requestCode);
+
+            getCaptureFileUriAndClear(provider.getContext(), requestCode);
+
+            results.onCancelled();
+
+            return task;
         }
+
+        if (resultCode != Activity.RESULT_OK) {
+            UriGrants.revoke(provider.getContext(), requestCode);
+
+            getCaptureFileUriAndClear(provider.getContext(), requestCode);
+
+            results.onError(new IOException("Bad activity result code: " + resultCode + ", for request code: " + requestCode));
+
+            return task;
+        }
+
+        final Context context = provider.getContext().getApplicationContext();
+
+        task.bind(provider);
+
+        MediaPickerExecutor.getBackground().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                UriGrants.revoke(context, requestCode);
+
+                final Uri captureFileUri = getCaptureFileUriAndClear(context, requestCode);
+
+                if (task.isCancelled()) {
+                    deliver(task, null);
+
+                    return;
+                }
+
+                final long start = Metrics.start(MediaPickerMetrics.Phase.HANDLE_RESULT);
+
+                final List<MediaPickerResult> resolved = new ArrayList<>();
+                final Map<Uri, IOException> errors = new LinkedHashMap<>();
+
+                IOException error = null;
+                long bytes = 0;
+
+                try {
+                    final List<Uri> uris = handleActivityUriResults(request, data, captureFileUri);
+
+                    for (final Uri uri : uris) {
+                        refreshSystemMediaScanDataBase(context, uri);
+                    }
+
+                    resolved.addAll(MediaPickerResult.resolveAll(context, uris, request, task, new MediaPickerUri.OnResolveError() {
+
+                        @Override
+                        public void onError(final Uri uri, final IOException e) {
+                            errors.put(uri, e);
+                        }
+                    }));
+
+                    for (final MediaPickerResult result : resolved) {
+                        bytes += start != 0 ? Math.max(0, result.getSize()) : 0;
+                    }
+
+                } catch (final IOException e) {
+
+                    error = e;
+                }
+
+                Metrics.end(MediaPickerMetrics.Phase.HANDLE_RESULT, start, error == null ? bytes : -1, error);
+
+                final IOException resolveError = error;
+
+                deliver(task, new MediaPickerTask.Outcome() {
+
+                    @Override
+                    public void deliver(final Object callback) {
+                        if (resolveError != null) {
+                            ((OnResolvedResults) callback).onError(resolveError);
+
+                        } else {
+                            ((OnResolvedResults) callback).onSuccess(request, resolved, errors);
+                        }
+                    }
+                });
+            }
+        });
+
+        return task;
+    }
+
+    /**
+     * Deliver the outcome of a task on the main thread unless the task was cancelled meanwhile.
+     *
+     * @param outcome Outcome of the task, or null to only release the task.
+     */
+    private static void deliver(final MediaPickerTask task, final MediaPickerTask.Outcome outcome) {
+
+        MediaPickerExecutor.runOnMain(new Runnable() {
+
+            @Override
+            public void run() {
+                task.deliver(outcome);
+            }
+        });
     }
 
     /**
      * Given a request code and a data result intent from an activity, attempt to
      * extract the returned file URI.
      *
-     * @param context Context.
      * @param request Source request, should be library defined.
      * @param data Data result intent.
+     * @param captureFileUri Capture destination recorded for the request, or null.
      *
      * @return File URI.
      *
      * @throws IOException Error thrown when no result can be extracted.
      */
-    private static Uri handleActivityUriResult(final Context context, final RequestType request, final Intent data) throws IOException {
+    private static Uri handleActivityUriResult(final RequestType request, final Intent data, final @Nullable Uri captureFileUri) throws IOException {
 
         switch (request) {
 
             case CAMERA:
-                return getCaptureFileUriAndClear(context);
+                return captureFileUri;
 
             case CROP:
                 return UCrop.getOutput(data);
@@ -303,82 +724,138 @@ public class MediaPicker {
                     return data.getData();
                 }
 
-                return getCaptureFileUriAndClear(context);
+                return captureFileUri;
 
             case DOCUMENTS:
             case GALLERY:
 
-                if (data == null || data.getData() == null) {
+                final List<Uri> uris = getDataUris(data);
+
+                if (uris.isEmpty()) {
 
                     throw new IOException("Picker returned no data result.");
                 }
 
-                return data.getData();
+                if (uris.size() > 1) {
+
+                    throw new IOException("Picker returned " + uris.size() + " results, handle requests allowing multiple selection with handleActivityResultsAsync.");
+                }
+
+                return uris.get(0);
         }
 
         throw new IOException("Picker returned unknown request.");
     }
 
     /**
-     * Create a temporary image file and persist it for later retrieval.  We use shared
-     * preferences here in the case that we lose our current
-     * instance by the time the activity returns a result.
+     * Extract every returned file URI, several when the picker allowed multiple selection.
      *
-     * @param context Source {@link Context}.
-     *
-     * @return Uri of the created file.
-     *
-     * @throws IOException Throws if cannot be created or persisted.
+     * @see #handleActivityUriResult(RequestType, Intent, Uri)
      */
-    private static Uri createTempImageFileAndPersistUri(final Provider provider) throws IOException {
-        final File file = provider.getImageFile();
-        final Context context = provider.getContext();
+    private static List<Uri> handleActivityUriResults(final RequestType request, final Intent data, final @Nullable Uri captureFileUri) throws IOException {
 
-        final String authority = context.getPackageName() + ".file-provider";
+        final List<Uri> uris = getDataUris(data);
+
+        if (uris.size() > 1 && request != RequestType.CAMERA && request != RequestType.CROP) {
+
+            return uris;
+        }
+
+        final Uri uri = handleActivityUriResult(request, data, captureFileUri);
+
+        if (uri == null) {
+
+            throw new IOException("Picker returned no data result.");
+        }
+
+        return Collections.singletonList(uri);
+    }
+
+    /**
+     * @return Uris of a data result intent, from its {@link ClipData} when
+     * several items were selected and from its data otherwise.
+     */
+    private static List<Uri> getDataUris(final Intent data) {
 
-        final Uri captureFileURI = FileProvider.getUriForFile(context, authority, file);
+        final List<Uri> uris = new ArrayList<>();
 
-        persistUri(context, file.toURI().toString());
+        if (data == null) {
+            return uris;
+        }
+
+        final ClipData clipData = data.getClipData();
+
+        if (clipData != null) {
+            for (int i = 0; i < clipData.getItemCount(); i++) {
+                final Uri uri = clipData.getItemAt(i).getUri();
+
+                if (uri != null && !uris.contains(uri)) {
+                    uris.add(uri);
+                }
+            }
+        }
+
+        if (uris.isEmpty() && data.getData() != null) {
+            uris.add(data.getData());
+        }
 
-        return captureFileURI;
+        return uris;
     }
 
     /**
-     * Persist a string Uri to shared preferences.  Can be null to remove
-     * any existing value.
+     * Content Uri through which external applications write a capture file.
      *
      * @param context Source {@link Context}.
-     * @param uri Target Uri string.
+     * @param file Capture file from {@link Provider#getImageFile()}.
+     *
+     * @return Uri of the file.
      */
-    private static void persistUri(final Context context, final String uri) {
-
-        final SharedPreferences.Editor editor = getSharedPreferences(context).edit();
+    private static Uri getCaptureFileUri(final Context context, final File file) {
+        final String authority = context.getPackageName() + ".file-provider";
 
-        editor.putString("picker_uri", uri);
-        editor.apply();
+        return FileProvider.getUriForFile(context, authority, file);
     }
 
     /**
-     * When choosing an image from a camera or gallery, we need to store the
-     * Uri to a temporary file to be filled.  Fetch it here and once
-     * recovered remove it from memory.
+     * When taking a photo from the camera or chooser, or cropping an image, the
+     * request records the Uri of the temporary file to be filled in case we lose our current
+     * instance by the time the activity returns a result.  Fetch it here and
+     * forget the request.  Request codes from before requests were registered
+     * fall back to the Uri persisted in shared preferences.
      *
      * @param context Source {@link Context}.
+     * @param requestCode Request code of the result.
      *
      * @return Associated file Uri if found.
      */
-    private static Uri getCaptureFileUriAndClear(final Context context) {
+    private static Uri getCaptureFileUriAndClear(final Context context, final int requestCode) {
+
+        final String uriString;
 
-        final String uriString = getSharedPreferences(context).getString("picker_uri", null);
+        if (RequestType.getToken(requestCode) != 0) {
+            uriString = MediaPickerRequests.remove(context, requestCode);
 
-        if (uriString != null) {
+        } else {
+            uriString = getSharedPreferences(context).getString("picker_uri", null);
 
-            persistUri(context, null);
+            if (uriString != null) {
+                getSharedPreferences(context).edit().remove("picker_uri").apply();
+            }
+        }
 
-            return Uri.parse(uriString);
+        if (uriString == null) {
+            return null;
         }
 
-        return null;
+        final Uri uri = Uri.parse(uriString);
+
+        MimeTypeDetector.invalidate(uri);
+
+        if (uri.getPath() != null) {
+            MediaPickerCache.touch(context, new File(uri.getPath()));
+        }
+
+        return uri;
     }
 
     /***
@@ -392,27 +869,6 @@ public class MediaPicker {
         return context.getSharedPreferences("picker", Context.MODE_PRIVATE);
     }
 
-    /**
-     * This is a hack to allow the file provider API to still
-     * work on older API versions.
-     *
-     * @see http://bit.ly/2iC4bUJ
-     */
-    private static void grantWriteAccessToURI(final @NonNull Context context,
-                                              final @NonNull Intent intent,
-                                              final @NonNull Uri uri) {
-        final List<ResolveInfo> resInfoList = context
-            .getPackageManager()
-            .queryIntentActivities(intent, PackageManager.MATCH_DEFAULT_ONLY);
-
-        for (ResolveInfo resolveInfo : resInfoList) {
-            final String packageName = resolveInfo.activityInfo.packageName;
-            final int mode = Intent.FLAG_GRANT_WRITE_URI_PERMISSION | Intent.FLAG_GRANT_READ_URI_PERMISSION;
-
-            context.grantUriPermission(packageName, uri, mode);
-        }
-    }
-
     /**
      * Refresh so file appears in associated
      * gallery and media explorer applications.
@@ -442,6 +898,21 @@ public class MediaPicker {
         return intent;
     }
 
+    /**
+     * @see #getIntent(String, String)
+     *
+     * @param allowMultiple Whether the target activity may return several items.
+     */
+    static Intent getIntent(final @NonNull String action, final @NonNull String mimeType, final boolean allowMultiple) {
+        final Intent intent = getIntent(action, mimeType);
+
+        if (allowMultiple && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+        }
+
+        return intent;
+    }
+
     /**
      * Invoked when any sort of input or output error occurs.  In the case of
      * the media picker this is most likely to be a result of a bad
@@ -463,6 +934,32 @@ public class MediaPicker {
         void onCancelled();
     }
 
+    /**
+     * Result callback of {@link #handleActivityResultAsync(Provider, int, int, Intent, OnResolvedResult)}.
+     */
+    public interface OnResolvedResult extends OnError {
+
+        void onSuccess(final MediaPickerResult result);
+
+        void onCancelled();
+    }
+
+    /**
+     * Result callback of {@link #handleActivityResultsAsync(Provider, int, int, Intent, OnResolvedResults)}.
+     */
+    public interface OnResolvedResults extends OnError {
+
+        /**
+         * @param request Request that produced the results.
+         * @param results Every returned item, in selection order.
+         * @param errors Items whose file could not be resolved, they are still part of the
+         *               results with a null {@link MediaPickerResult#getFile()}.
+         */
+        void onSuccess(final RequestType request, final List<MediaPickerResult> results, final Map<Uri, IOException> errors);
+
+        void onCancelled();
+    }
+
     /**
      * Provider interface used to drive the operation of the picker.
      *
@@ -475,6 +972,11 @@ public class MediaPicker {
 
         Context getContext();
 
+        /**
+         * @return File a camera application writes a photo to.  Files created with
+         * {@link MediaPickerCache#createImageFile(Context)} are evicted by the cache
+         * once unused unless claimed, files anywhere else are left to the application.
+         */
         File getImageFile();
 
         void startActivityForResult(final Intent intent, final int requestCode);
@@ -0,0 +1,466 @@
+package com.miguelgaeta.media_picker;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.res.Configuration;
+import android.support.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Size bounded cache of the files the library writes, photos taken by camera
+ * applications, crop output and local copies of content.
+ *
+ * Every file in the library cache directory is tracked by last use, files
+ * anywhere else, like capture files the provider put outside of it, are never
+ * touched.  Once they add up to more than the maximum size, the least recently
+ * used ones are deleted on a low priority background thread, and every one is
+ * deleted when the device runs low on storage.  Files an external activity may
+ * still write to, copies in progress, files used in the last few minutes and files
+ * the application claimed are never deleted, so results that must outlive the
+ * cache have to be claimed or moved elsewhere.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public final class MediaPickerCache {
+
+    /**
+     * Default maximum size of the cache in bytes.
+     */
+    public static final long DEFAULT_MAX_SIZE = 100 * 1024 * 1024;
+
+    /**
+     * Files used more recently than this are assumed to still be read.
+     */
+    private static final long MIN_AGE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final ThreadPoolExecutor sweeper = new ThreadPoolExecutor(
+        1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+        @Override
+        public Thread newThread(final @NonNull Runnable runnable) {
+            final Thread thread = new Thread(runnable, "media-picker-cache");
+
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+
+            return thread;
+        }
+    });
+
+    static {
+        sweeper.allowCoreThreadTimeOut(true);
+    }
+
+    private static volatile long maxSize = DEFAULT_MAX_SIZE;
+
+    private static MediaPickerCache instance;
+
+    private final Context context;
+
+    /**
+     * Last use in milliseconds of every tracked file by canonical path.
+     */
+    private final Map<String, Long> index = new HashMap<>();
+
+    private final Set<String> claims = new LinkedHashSet<>();
+
+    private final AtomicBoolean sweepScheduled = new AtomicBoolean();
+
+    @SuppressWarnings("deprecation")
+    private MediaPickerCache(final Context context) {
+        this.context = context;
+
+        synchronized (this) {
+            try {
+                readPaths(MediaPickerFiles.getClaims(context), claims);
+
+            } catch (final IOException ignored) {
+
+                // Unreadable claims are treated as none, the sweep then keeps only recent files.
+            }
+        }
+
+        context.registerComponentCallbacks(new ComponentCallbacks2() {
+
+            @Override
+            public void onTrimMemory(final int level) {
+                if (level >= TRIM_MEMORY_BACKGROUND) {
+                    scheduleSweep(maxSize);
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(final @NonNull Configuration configuration) {
+
+            }
+
+            @Override
+            public void onLowMemory() {
+                scheduleSweep(maxSize);
+            }
+        });
+
+        context.registerReceiver(new BroadcastReceiver() {
+
+            @Override
+            public void onReceive(final Context context, final Intent intent) {
+                scheduleSweep(0);
+            }
+        }, new IntentFilter(Intent.ACTION_DEVICE_STORAGE_LOW));
+    }
+
+    /**
+     * @return Process wide cache, created on first use.
+     */
+    private static synchronized MediaPickerCache get(final Context context) {
+        if (instance == null) {
+            instance = new MediaPickerCache(context.getApplicationContext());
+        }
+
+        return instance;
+    }
+
+    /**
+     * Set the size in bytes the cache is trimmed down to, {@link #DEFAULT_MAX_SIZE} by default.
+     *
+     * @param context Android application or activity context.
+     * @param bytes Maximum size of the unclaimed files.
+     */
+    public static void setMaxSize(final @NonNull Context context, final long bytes) {
+        maxSize = Math.max(0, bytes);
+
+        get(context).scheduleSweep(maxSize);
+    }
+
+    /**
+     * Create an empty file for a camera application to write a photo to, meant to
+     * be returned by {@link MediaPicker.Provider#getImageFile()}.  The application
+     * file provider must expose it, for example with
+     * {@code <cache-path name="media-picker" path="media-picker/" />}.
+     *
+     * @param context Android application or activity context.
+     *
+     * @return New file in the cache.
+     *
+     * @throws IOException Thrown if the file cannot be created.
+     */
+    public static File createImageFile(final @NonNull Context context) throws IOException {
+        return get(context).create(MediaPickerFiles.getCapturesDirectory(context), "capture-", ".jpg");
+    }
+
+    /**
+     * Create an empty file for a crop to write its output to.
+     *
+     * @see #createImageFile(Context)
+     */
+    static File createCropFile(final Context context) throws IOException {
+        return get(context).create(MediaPickerFiles.getCropsDirectory(context), "crop-", ".png");
+    }
+
+    /**
+     * Take ownership of a file, it is never deleted by the cache and no
+     * longer counts towards its size.  Claims outlive the process.
+     *
+     * @param context Android application or activity context.
+     * @param file File returned by the library.
+     */
+    public static void claim(final @NonNull Context context, final @NonNull File file) {
+        get(context).setClaimed(file, true);
+    }
+
+    /**
+     * Give a claimed file back to the cache, to be deleted once unused.
+     *
+     * @see #claim(Context, File)
+     */
+    public static void release(final @NonNull Context context, final @NonNull File file) {
+        get(context).setClaimed(file, false);
+    }
+
+    /**
+     * Trim the cache down to its maximum size on a background thread.
+     *
+     * @param context Android application or activity context.
+     */
+    public static void trim(final @NonNull Context context) {
+        get(context).scheduleSweep(maxSize);
+    }
+
+    /**
+     * Mark a file of the cache as used, keeping it from being evicted for a while.
+     * Files outside the library cache directory are left alone.
+     *
+     * @param context Android application or activity context.
+     * @param file File of the cache.
+     */
+    static void touch(final Context context, final File file) {
+        if (!MediaPickerFiles.isManaged(context, file)) {
+            return;
+        }
+
+        final MediaPickerCache cache = get(context);
+
+        synchronized (cache) {
+            cache.index.put(MediaPickerFiles.getCanonicalPath(file), System.currentTimeMillis());
+        }
+
+        cache.scheduleSweep(maxSize);
+    }
+
+    private File create(final File directory, final String prefix, final String suffix) throws IOException {
+        final File file = File.createTempFile(prefix, suffix, directory);
+
+        synchronized (this) {
+            index.put(MediaPickerFiles.getCanonicalPath(file), System.currentTimeMillis());
+        }
+
+        scheduleSweep(maxSize);
+
+        return file;
+    }
+
+    /**
+     * Run a sweep on the cache thread, unless one is already waiting to run.
+     *
+     * @param budget Size in bytes the unclaimed files are trimmed down to.
+     */
+    private void scheduleSweep(final long budget) {
+        if (budget > 0 && !sweepScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        sweeper.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                if (budget > 0) {
+                    sweepScheduled.set(false);
+                }
+
+                sweep(budget);
+            }
+        });
+    }
+
+    /**
+     * Delete the least recently used files that are not in use until
+     * the unclaimed ones fit in the budget.
+     */
+    private void sweep(final long budget) {
+        final Set<String> pending = MediaPickerRequests.getPendingPaths(context);
+
+        final Map<String, Long> lastUses;
+        final Set<String> claimed;
+
+        synchronized (this) {
+            try {
+                scan();
+
+            } catch (final IOException e) {
+                return;
+            }
+
+            lastUses = new HashMap<>(index);
+            claimed = new HashSet<>(claims);
+        }
+
+        final List<String> paths = new ArrayList<>(lastUses.keySet());
+
+        Collections.sort(paths, new Comparator<String>() {
+
+            @Override
+            public int compare(final String lhs, final String rhs) {
+                return lastUses.get(lhs).compareTo(lastUses.get(rhs));
+            }
+        });
+
+        long size = 0;
+
+        for (final String path : paths) {
+            size += claimed.contains(path) ? 0 : new File(path).length();
+        }
+
+        final long now = System.currentTimeMillis();
+
+        for (final String path : paths) {
+            if (size <= budget) {
+                break;
+            }
+
+            final File file = new File(path);
+            final long lastUsed = lastUses.get(path);
+
+            if (claimed.contains(path) || pending.contains(path) || UriCopier.isInFlight(file) || now - Math.max(lastUsed, file.lastModified()) < MIN_AGE_MILLIS) {
+                continue;
+            }
+
+            final long length = file.length();
+
+            synchronized (this) {
+
+                // Skip files used or claimed since the sweep started.
+                if (claims.contains(path) || !Long.valueOf(lastUsed).equals(index.get(path)) || !file.delete()) {
+                    continue;
+                }
+
+                index.remove(path);
+            }
+
+            size -= length;
+        }
+    }
+
+    /**
+     * Bring the index in line with the files on disk, files found for the
+     * first time are considered last used when they were last modified.
+     */
+    private void scan() throws IOException {
+        final Set<String> found = new HashSet<>();
+
+        for (final File directory : MediaPickerFiles.getManagedDirectories(context)) {
+            final File[] files = directory.listFiles();
+
+            if (files == null) {
+                continue;
+            }
+
+            final String root = MediaPickerFiles.getCanonicalPath(directory) + File.separator;
+
+            for (final File file : files) {
+                if (file.isFile()) {
+                    final String path = root + file.getName();
+
+                    found.add(path);
+
+                    if (!index.containsKey(path)) {
+                        index.put(path, file.lastModified());
+                    }
+                }
+            }
+        }
+
+        index.keySet().retainAll(found);
+    }
+
+    private void setClaimed(final File file, final boolean claimed) {
+        final String path = MediaPickerFiles.getCanonicalPath(file);
+
+        synchronized (this) {
+            if (claimed ? !claims.add(path) : !claims.remove(path)) {
+                return;
+            }
+
+            if (!claimed) {
+                index.put(path, System.currentTimeMillis());
+            }
+        }
+
+        scheduleWriteClaims();
+
+        if (!claimed) {
+            scheduleSweep(maxSize);
+        }
+    }
+
+    /**
+     * Persist the claims on the cache thread, after any sweep already queued.
+     */
+    private void scheduleWriteClaims() {
+        sweeper.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                synchronized (MediaPickerCache.this) {
+                    try {
+                        writePaths(MediaPickerFiles.getClaims(context), claims);
+
+                    } catch (final IOException ignored) {
+
+                        // The claims still hold for the lifetime of the process.
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Add the canonical paths listed in target file that still exist.
+     */
+    private static void readPaths(final File file, final Set<String> paths) throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+
+        try {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                final File path = new File(line);
+
+                if (path.exists()) {
+                    paths.add(MediaPickerFiles.getCanonicalPath(path));
+                }
+            }
+
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Replace target file with a list of paths, synced to disk before it is moved into place.
+     */
+    private static void writePaths(final File file, final Set<String> paths) throws IOException {
+        final File temp = new File(file.getPath() + ".tmp");
+
+        final FileOutputStream outputStream = new FileOutputStream(temp);
+
+        try {
+            final Writer writer = new OutputStreamWriter(outputStream, "UTF-8");
+
+            for (final String path : paths) {
+                writer.write(path + "\n");
+            }
+
+            writer.flush();
+
+            outputStream.getFD().sync();
+
+        } finally {
+            outputStream.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+
+            throw new IOException("Unable to move paths into place: " + file);
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.miguelgaeta.media_picker;
 
+import android.content.BroadcastReceiver;
 import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.net.Uri;
@@ -13,6 +16,8 @@ import android.support.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -23,11 +28,128 @@ import java.util.Map;
  */
 class MediaPickerChooser {
 
+    /**
+     * Activities matching each filter intent, keyed by its action, type and component.  Cleared
+     * whenever a package is installed, removed or changed.
+     */
+    private static final Map<String, List<ComponentName>> resolutions = new HashMap<>();
+
+    private static BroadcastReceiver packageReceiver;
+
+    /**
+     * Bumped on every invalidation so queries racing with one are not cached.
+     */
+    private static int generation;
+
+    /**
+     * Resolve the activities offered for target mime types ahead of time on a
+     * background thread, so the first chooser opens without querying.
+     *
+     * @param context Android application or activity context.
+     * @param mimeTypes Mime type filters that will be used.
+     */
+    static void prewarm(final @NonNull Context context, final @NonNull String... mimeTypes) {
+        final Context applicationContext = context.getApplicationContext();
+
+        MediaPickerExecutor.getBackground().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                queryActivities(applicationContext, new Intent(MediaStore.ACTION_IMAGE_CAPTURE));
+
+                for (final String mimeType : mimeTypes) {
+                    queryActivities(applicationContext, MediaPicker.getIntent(Intent.ACTION_PICK, mimeType));
+                    queryActivities(applicationContext, MediaPicker.getIntent(Intent.ACTION_GET_CONTENT, mimeType));
+                }
+            }
+        });
+    }
+
+    /**
+     * Find the activities matching a filter intent, queried once and then
+     * served from the cache until the installed packages change.
+     *
+     * @param context Android application or activity context.
+     * @param filterIntent Filter by {@link Intent}, only its action, type and component are considered.
+     *
+     * @return Matching activities.
+     */
+    static List<ComponentName> queryActivities(final @NonNull Context context, final @NonNull Intent filterIntent) {
+        return queryActivities(context, filterIntent, 0);
+    }
+
+    /**
+     * @param flags Additional {@link PackageManager} query flags, such as {@link PackageManager#MATCH_DEFAULT_ONLY}.
+     *
+     * @see #queryActivities(Context, Intent)
+     */
+    static List<ComponentName> queryActivities(final @NonNull Context context, final @NonNull Intent filterIntent, final int flags) {
+        final String key = filterIntent.getAction() + ";" + filterIntent.getType() + ";" + filterIntent.getComponent() + ";" + flags;
+
+        final int queryGeneration;
+
+        synchronized (resolutions) {
+            final List<ComponentName> components = resolutions.get(key);
+
+            if (components != null) {
+                return components;
+            }
+
+            registerPackageReceiver(context);
+
+            queryGeneration = generation;
+        }
+
+        final List<ComponentName> components = new ArrayList<>();
+
+        for (final ResolveInfo resolveInfo : context.getPackageManager().queryIntentActivities(filterIntent, flags)) {
+            components.add(new ComponentName(resolveInfo.activityInfo.packageName, resolveInfo.activityInfo.name));
+        }
+
+        final List<ComponentName> result = Collections.unmodifiableList(components);
+
+        synchronized (resolutions) {
+            if (queryGeneration == generation) {
+                resolutions.put(key, result);
+            }
+        }
+
+        return result;
+    }
+
+    private static void registerPackageReceiver(final Context context) {
+        if (packageReceiver != null) {
+            return;
+        }
+
+        final IntentFilter filter = new IntentFilter();
+
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+
+        packageReceiver = new BroadcastReceiver() {
+
+            @Override
+            public void onReceive(final Context context, final Intent intent) {
+                synchronized (resolutions) {
+                    resolutions.clear();
+
+                    generation++;
+                }
+            }
+        };
+
+        context.getApplicationContext().registerReceiver(packageReceiver, filter);
+    }
+
     /**
      * Gets an chooser intent that attempts to discover all activities on
      * the device that can be used to select media.
      *
-     * @param packageManager Device {@link PackageManager}.
+     * @param context Android application or activity context.
      * @param chooserTitle Title for the chooser.
      * @param captureFileURI Capture result URI for camera.
      *
@@ -35,12 +157,34 @@ class MediaPickerChooser {
      *
      * @throws IOException
      */
-    static Intent getMediaChooserIntent(final @NonNull PackageManager packageManager,
+    static Intent getMediaChooserIntent(final @NonNull Context context,
                                         final @NonNull String chooserTitle,
                                         final @NonNull Uri captureFileURI,
                                         final @NonNull String mimeType) throws IOException {
 
-        final Collection<Intent> intents = getMediaActivityIntents(packageManager, captureFileURI, mimeType);
+        final long start = Metrics.start(MediaPickerMetrics.Phase.CHOOSER);
+
+        Throwable error = null;
+
+        try {
+            return createMediaChooserIntent(context, chooserTitle, captureFileURI, mimeType);
+
+        } catch (final IOException | RuntimeException e) {
+            error = e;
+
+            throw e;
+
+        } finally {
+            Metrics.end(MediaPickerMetrics.Phase.CHOOSER, start, -1, error);
+        }
+    }
+
+    private static Intent createMediaChooserIntent(final Context context,
+                                                   final String chooserTitle,
+                                                   final Uri captureFileURI,
+                                                   final String mimeType) throws IOException {
+
+        final Collection<Intent> intents = getMediaActivityIntents(context, captureFileURI, mimeType);
 
         if (intents.isEmpty()) {
 
@@ -71,12 +215,12 @@ class MediaPickerChooser {
     /**
      * Find a collection of all matching media intents on the device.
      *
-     * @param packageManager Device {@link PackageManager}.
+     * @param context Android application or activity context.
      * @param captureFileURI Capture result URI for camera.
      *
      * @return Collection of media activity intents.
      */
-    private static Collection<Intent> getMediaActivityIntents(final @NonNull PackageManager packageManager,
+    private static Collection<Intent> getMediaActivityIntents(final @NonNull Context context,
                                                               final @NonNull Uri captureFileURI,
                                                               final @NonNull String mimeType) {
 
@@ -90,9 +234,9 @@ class MediaPickerChooser {
 
         final Map<String, Intent> intents = new LinkedHashMap<>();
 
-        getIntentActivities(intents, packageManager, typeDocuments, null);
-        getIntentActivities(intents, packageManager, typeGallery, null);
-        getIntentActivities(intents, packageManager, typeCamera, new IntentModifier() {
+        getIntentActivities(intents, context, typeDocuments, null);
+        getIntentActivities(intents, context, typeGallery, null);
+        getIntentActivities(intents, context, typeCamera, new IntentModifier() {
 
             @Override
             public void onFoundIntent(Intent intent) {
@@ -108,28 +252,27 @@ class MediaPickerChooser {
      * Given a filter, create a list of all matching activities and
      * return them as a list of intents.
      *
-     * @param packageManager Device {@link PackageManager}.
+     * @param context Android application or activity context.
      * @param filterIntent Filter by {@link Intent}.
      * @param modifier Callback to modify each matched {@link Intent}.
      */
     private static void getIntentActivities(final @NonNull Map<String, Intent> intents,
-                                            final @NonNull PackageManager packageManager,
+                                            final @NonNull Context context,
                                             final @NonNull Intent filterIntent,
                                             final @Nullable IntentModifier modifier) {
 
-        for (final ResolveInfo resolveInfo : packageManager.queryIntentActivities(filterIntent, 0)) {
+        for (final ComponentName componentName : queryActivities(context, filterIntent)) {
 
-            final ComponentName componentName = new ComponentName(resolveInfo.activityInfo.packageName, resolveInfo.activityInfo.name);
             final Intent intent = new Intent(filterIntent);
 
             intent.setComponent(componentName);
-            intent.setPackage(resolveInfo.activityInfo.packageName);
+            intent.setPackage(componentName.getPackageName());
 
             if (modifier != null) {
                 modifier.onFoundIntent(intent);
             }
 
-            intents.put(resolveInfo.activityInfo.packageName, intent);
+            intents.put(componentName.getPackageName(), intent);
         }
     }
 
@@ -0,0 +1,60 @@
+package com.miguelgaeta.media_picker;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads used by the picker to keep provider queries and file work off the main thread.
+ */
+class MediaPickerExecutor {
+
+    private static final int THREAD_COUNT = 2;
+
+    private static final ThreadPoolExecutor background = new ThreadPoolExecutor(
+        THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final @NonNull Runnable runnable) {
+            final Thread thread = new Thread(runnable, "media-picker-" + count.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    });
+
+    private static final Handler main = new Handler(Looper.getMainLooper());
+
+    static {
+        background.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return Shared executor for short background work.
+     */
+    static Executor getBackground() {
+        return background;
+    }
+
+    /**
+     * Run target on the main thread, immediately if already on it.
+     */
+    static void runOnMain(final Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+
+        } else {
+            main.post(runnable);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.miguelgaeta.media_picker;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Locations of the files owned by the library inside the application cache
+ * and files directories.
+ */
+class MediaPickerFiles {
+
+    private static final String DIRECTORY_NAME = "media-picker";
+
+    private static final String COPIES_DIRECTORY_NAME = "copies";
+
+    private static final String CAPTURES_DIRECTORY_NAME = "captures";
+
+    private static final String CROPS_DIRECTORY_NAME = "crops";
+
+    private static final String REQUEST_JOURNAL_NAME = "requests.journal";
+
+    private static final String CLAIMS_NAME = "claims";
+
+    /**
+     * Directory holding local copies of content that has no usable file path.
+     *
+     * @param context Android application or activity context.
+     *
+     * @return Existing directory.
+     *
+     * @throws IOException Thrown if the directory cannot be created.
+     */
+    static File getCopiesDirectory(final Context context) throws IOException {
+        return getDirectory(new File(new File(context.getCacheDir(), DIRECTORY_NAME), COPIES_DIRECTORY_NAME));
+    }
+
+    /**
+     * Directory holding photos taken by camera applications.
+     *
+     * @see #getCopiesDirectory(Context)
+     */
+    static File getCapturesDirectory(final Context context) throws IOException {
+        return getDirectory(new File(new File(context.getCacheDir(), DIRECTORY_NAME), CAPTURES_DIRECTORY_NAME));
+    }
+
+    /**
+     * Directory holding the output of image crops.
+     *
+     * @see #getCopiesDirectory(Context)
+     */
+    static File getCropsDirectory(final Context context) throws IOException {
+        return getDirectory(new File(new File(context.getCacheDir(), DIRECTORY_NAME), CROPS_DIRECTORY_NAME));
+    }
+
+    /**
+     * @return Every directory whose files the library may evict.
+     */
+    static File[] getManagedDirectories(final Context context) throws IOException {
+        return new File[] {getCapturesDirectory(context), getCropsDirectory(context), getCopiesDirectory(context)};
+    }
+
+    /**
+     * Paths of the files the application claimed, kept next to the request journal.
+     *
+     * @see #getRequestJournal(Context)
+     */
+    static File getClaims(final Context context) throws IOException {
+        return new File(getDirectory(new File(context.getFilesDir(), DIRECTORY_NAME)), CLAIMS_NAME);
+    }
+
+    /**
+     * @return True if target file lives in one of the managed directories.
+     *
+     * @see #getManagedDirectories(Context)
+     */
+    static boolean isManaged(final Context context, final File file) {
+        final File parent = new File(getCanonicalPath(file)).getParentFile();
+
+        try {
+            for (final File directory : getManagedDirectories(context)) {
+                if (getCanonicalPath(directory).equals(parent != null ? parent.getPath() : null)) {
+                    return true;
+                }
+            }
+
+        } catch (final IOException ignored) {
+
+            // Without its directories nothing is managed.
+        }
+
+        return false;
+    }
+
+    /**
+     * Path identifying target file however it was reached, its
+     * absolute path if the file system cannot be queried.
+     */
+    static String getCanonicalPath(final File file) {
+        try {
+            return file.getCanonicalPath();
+
+        } catch (final IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Journal of the pending requests, kept outside the cache directory
+     * so the system does not clear it while a request is in flight.
+     *
+     * @param context Android application or activity context.
+     *
+     * @return Journal file, which may not exist yet.
+     *
+     * @throws IOException Thrown if its directory cannot be created.
+     */
+    static File getRequestJournal(final Context context) throws IOException {
+        return new File(getDirectory(new File(context.getFilesDir(), DIRECTORY_NAME)), REQUEST_JOURNAL_NAME);
+    }
+
+    private static File getDirectory(final File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+
+            throw new IOException("Unable to create directory: " + directory);
+        }
+
+        return directory;
+    }
+}
@@ -0,0 +1,66 @@
+package com.miguelgaeta.media_picker;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Receives timings of each phase of the picker pipeline.
+ *
+ * Callbacks are invoked synchronously on the thread running the phase, so
+ * implementations should be cheap and thread safe.  When no listener is
+ * installed the pipeline only pays for a single volatile read per phase.
+ *
+ * @see MediaPicker#setMetrics(MediaPickerMetrics)
+ */
+public interface MediaPickerMetrics {
+
+    /**
+     * A phase is starting on the current thread.
+     */
+    void onStart(final @NonNull Phase phase);
+
+    /**
+     * A phase that started on the current thread has ended.
+     *
+     * @param phase Ended phase.
+     * @param durationNanos Time spent in the phase.
+     * @param bytes Bytes processed by the phase, or -1 when not applicable.
+     * @param error Failure that ended the phase, or null if it succeeded.
+     */
+    void onEnd(final @NonNull Phase phase, final long durationNanos, final long bytes, final @Nullable Throwable error);
+
+    enum Phase {
+
+        /**
+         * Building the chooser intent and querying the candidate activities.
+         */
+        CHOOSER,
+
+        /**
+         * Time spent in the external picker, camera or cropper activity, measured
+         * from its start until its result is handled.  Only reported when the
+         * process survives while the activity is shown.
+         */
+        EXTERNAL_ACTIVITY,
+
+        /**
+         * Extracting and resolving an activity result.
+         */
+        HANDLE_RESULT,
+
+        /**
+         * Resolving a {@link android.net.Uri} to a file.
+         */
+        RESOLVE,
+
+        /**
+         * Copying content without a usable file to the cache directory.
+         */
+        COPY,
+
+        /**
+         * Encoding content as base64 or a data url.
+         */
+        ENCODE
+    }
+}
@@ -0,0 +1,327 @@
+package com.miguelgaeta.media_picker;
+
+import android.content.Context;
+import android.net.Uri;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registry of the requests waiting for an activity result.
+ *
+ * Every request gets a token that is encoded into its request code, see
+ * {@link RequestType#getCode(int)}, so several pickers can be in flight at once.
+ * Pending requests and their capture destinations are kept in memory and appended to
+ * a small journal that is synced to disk before the external activity starts,
+ * so they survive the process being killed meanwhile.  Requests that get a result
+ * or are abandoned have a removal record synced the same way, and the journal
+ * is then compacted in the background down to the requests still pending.
+ */
+class MediaPickerRequests {
+
+    /**
+     * Oldest requests beyond this count are considered abandoned.
+     */
+    private static final int MAX_PENDING = 16;
+
+    private static final String ADD = "+";
+
+    private static final String REMOVE = "-";
+
+    /**
+     * Recorded for requests without a capture destination.
+     */
+    private static final String NO_DESTINATION = "";
+
+    /**
+     * Capture destinations of pending requests by request code, oldest first.
+     */
+    private static final Map<Integer, String> pending = new LinkedHashMap<>();
+
+    private static boolean loaded;
+
+    private static int lastToken;
+
+    /**
+     * Allocate and durably record the request code of a request with no capture destination.
+     *
+     * @see #register(Context, RequestType, String)
+     */
+    static int obtain(final Context context, final RequestType request) throws IOException {
+        return register(context, request, NO_DESTINATION);
+    }
+
+    /**
+     * Allocate the request code of a request and durably record its capture
+     * destination before returning, abandoning the oldest requests if too
+     * many are pending.
+     *
+     * @param context Android application or activity context.
+     * @param request Type of the request.
+     * @param captureUri Capture destination of the request.
+     *
+     * @return Request code of the request.
+     *
+     * @throws IOException Failure to record the request.
+     */
+    static synchronized int register(final Context context, final RequestType request, final String captureUri) throws IOException {
+        load(context);
+
+        final int requestCode = request.getCode(nextToken());
+
+        final StringBuilder records = new StringBuilder(ADD + requestCode + " " + captureUri);
+
+        final List<Integer> abandoned = new ArrayList<>();
+
+        for (final int pendingCode : pending.keySet()) {
+            if (pending.size() - abandoned.size() < MAX_PENDING) {
+                break;
+            }
+
+            abandoned.add(pendingCode);
+
+            records.append('\n').append(REMOVE).append(pendingCode);
+        }
+
+        append(context, records.toString());
+
+        pending.put(requestCode, captureUri);
+
+        for (final int abandonedCode : abandoned) {
+            pending.remove(abandonedCode);
+
+            UriGrants.revoke(context, abandonedCode);
+        }
+
+        return requestCode;
+    }
+
+    /**
+     * Forget a request once its result arrived, syncing its removal to the
+     * journal before returning, and compact the journal.
+     *
+     * @param context Android application or activity context.
+     * @param requestCode Request code of the request.
+     *
+     * @return Capture destination recorded for the request, or null.
+     */
+    static String remove(final Context context, final int requestCode) {
+        final String captureUri;
+
+        synchronized (MediaPickerRequests.class) {
+            load(context);
+
+            captureUri = pending.remove(requestCode);
+
+            if (captureUri == null) {
+                return null;
+            }
+
+            try {
+                append(context, REMOVE + requestCode);
+
+            } catch (final IOException ignored) {
+
+                // The compaction below still drops the request from the journal.
+            }
+        }
+
+        compact(context);
+
+        return NO_DESTINATION.equals(captureUri) ? null : captureUri;
+    }
+
+    /**
+     * Find the request a result belongs to.  Request codes carrying a token
+     * are only recognized while their request is pending, so the host
+     * application's own request codes are left to it.
+     *
+     * @param context Android application or activity context.
+     * @param requestCode Request code of the result.
+     *
+     * @return Request type, or null if the result is not for a picker request.
+     */
+    static synchronized RequestType getRequest(final Context context, final int requestCode) {
+        if (RequestType.getToken(requestCode) == 0) {
+            return RequestType.create(requestCode);
+        }
+
+        load(context);
+
+        return pending.containsKey(requestCode) ? RequestType.create(requestCode) : null;
+    }
+
+    /**
+     * @param context Android application or activity context.
+     *
+     * @return Paths of the destinations external activities may still write to.
+     */
+    static synchronized Set<String> getPendingPaths(final Context context) {
+        load(context);
+
+        final Set<String> paths = new HashSet<>();
+
+        for (final String captureUri : pending.values()) {
+            final String path = NO_DESTINATION.equals(captureUri) ? null : Uri.parse(captureUri).getPath();
+
+            if (path != null) {
+                paths.add(MediaPickerFiles.getCanonicalPath(new File(path)));
+            }
+        }
+
+        return paths;
+    }
+
+    /**
+     * Next token after the last one handed out, skipping the ones of pending requests.
+     */
+    private static int nextToken() {
+        while (true) {
+            lastToken = lastToken % RequestType.MAX_TOKEN + 1;
+
+            boolean used = false;
+
+            for (final int requestCode : pending.keySet()) {
+                used |= RequestType.getToken(requestCode) == lastToken;
+            }
+
+            if (!used) {
+                return lastToken;
+            }
+        }
+    }
+
+    /**
+     * Replay the journal into memory once per process.
+     */
+    private static void load(final Context context) {
+        if (loaded) {
+            return;
+        }
+
+        loaded = true;
+
+        try {
+            final File journal = MediaPickerFiles.getRequestJournal(context);
+
+            if (!journal.isFile()) {
+                return;
+            }
+
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), "UTF-8"));
+
+            try {
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    replay(line);
+                }
+
+            } finally {
+                reader.close();
+            }
+
+        } catch (final IOException ignored) {
+
+            // Requests recorded in an unreadable journal are lost.
+        }
+
+        for (final int requestCode : pending.keySet()) {
+            lastToken = Math.max(lastToken, RequestType.getToken(requestCode));
+        }
+    }
+
+    private static void replay(final String record) {
+        final int separator = record.indexOf(' ');
+
+        try {
+            if (record.startsWith(REMOVE)) {
+                pending.remove(Integer.parseInt(record.substring(REMOVE.length())));
+
+            } else if (record.startsWith(ADD) && separator >= 0) {
+                pending.put(Integer.parseInt(record.substring(ADD.length(), separator)), record.substring(separator + 1));
+            }
+
+        } catch (final NumberFormatException ignored) {
+
+            // A torn last record is skipped.
+        }
+    }
+
+    /**
+     * Append records, one per line, and sync them to disk.
+     */
+    private static void append(final Context context, final String record) throws IOException {
+        final FileOutputStream outputStream = new FileOutputStream(MediaPickerFiles.getRequestJournal(context), true);
+
+        try {
+            final Writer writer = new OutputStreamWriter(outputStream, "UTF-8");
+
+            writer.write(record + "\n");
+            writer.flush();
+
+            outputStream.getFD().sync();
+
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Rewrite the journal with only the pending requests, on a background thread.
+     */
+    private static void compact(final Context context) {
+        final Context applicationContext = context.getApplicationContext();
+
+        MediaPickerExecutor.getBackground().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                synchronized (MediaPickerRequests.class) {
+                    try {
+                        final File journal = MediaPickerFiles.getRequestJournal(applicationContext);
+                        final File temp = new File(journal.getPath() + ".tmp");
+
+                        final FileOutputStream outputStream = new FileOutputStream(temp);
+
+                        try {
+                            final Writer writer = new OutputStreamWriter(outputStream, "UTF-8");
+
+                            for (final Map.Entry<Integer, String> entry : pending.entrySet()) {
+                                writer.write(ADD + entry.getKey() + " " + entry.getValue() + "\n");
+                            }
+
+                            writer.flush();
+
+                            outputStream.getFD().sync();
+
+                        } finally {
+                            outputStream.close();
+                        }
+
+                        if (!temp.renameTo(journal)) {
+                            //noinspection ResultOfMethodCallIgnored
+                            temp.delete();
+                        }
+
+                    } catch (final IOException ignored) {
+
+                        // The appended removal records still apply on the next load.
+                    }
+                }
+            }
+        });
+    }
+}
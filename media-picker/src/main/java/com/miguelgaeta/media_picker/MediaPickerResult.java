@@ -0,0 +1,573 @@
+package com.miguelgaeta.media_picker;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.provider.MediaStore;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.webkit.MimeTypeMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Metadata of a picked {@link Uri}.
+ *
+ * Everything the provider exposes is read with a single query when the result
+ * is created.  Anything missing from it and requiring more I/O, like resolving
+ * the file or decoding the image bounds, is looked up on first access and
+ * remembered, so accessors doing I/O should not be called on the main thread
+ * unless the value was already resolved.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class MediaPickerResult {
+
+    /**
+     * Columns every provider view may have, before Android Q the MediaStore
+     * views reject the columns of other collections.
+     */
+    private static final String[] PROJECTION = {
+        MediaStore.MediaColumns.DATA,
+        MediaStore.MediaColumns.SIZE,
+        MediaStore.MediaColumns.MIME_TYPE,
+        MediaStore.MediaColumns.DATE_MODIFIED
+    };
+
+    private static final String[] IMAGES_PROJECTION = {
+        MediaStore.MediaColumns.DATA,
+        MediaStore.MediaColumns.SIZE,
+        MediaStore.MediaColumns.MIME_TYPE,
+        MediaStore.MediaColumns.DATE_MODIFIED,
+        MediaStore.MediaColumns.WIDTH,
+        MediaStore.MediaColumns.HEIGHT,
+        MediaStore.Images.ImageColumns.ORIENTATION
+    };
+
+    private static final String[] VIDEO_PROJECTION = {
+        MediaStore.MediaColumns.DATA,
+        MediaStore.MediaColumns.SIZE,
+        MediaStore.MediaColumns.MIME_TYPE,
+        MediaStore.MediaColumns.DATE_MODIFIED,
+        MediaStore.MediaColumns.WIDTH,
+        MediaStore.MediaColumns.HEIGHT,
+        MediaStore.Video.VideoColumns.DURATION
+    };
+
+    private static final String[] AUDIO_PROJECTION = {
+        MediaStore.MediaColumns.DATA,
+        MediaStore.MediaColumns.SIZE,
+        MediaStore.MediaColumns.MIME_TYPE,
+        MediaStore.MediaColumns.DATE_MODIFIED,
+        MediaStore.Audio.AudioColumns.DURATION
+    };
+
+    private final Context context;
+    private final Uri uri;
+    private final RequestType request;
+
+    private final String path;
+    private final long size;
+    private final long dateModified;
+    private final long duration;
+
+    private String mimeType;
+    private int width;
+    private int height;
+    private int orientation;
+
+    private File file;
+
+    private boolean fileResolved;
+    private boolean mimeTypeResolved;
+    private boolean boundsResolved;
+    private boolean orientationResolved;
+
+    private MediaPickerResult(final Context context, final Uri uri, final RequestType request, final Metadata metadata) {
+        this.context = context;
+        this.uri = uri;
+        this.request = request;
+
+        this.path = metadata.path;
+        this.size = metadata.size;
+        this.dateModified = metadata.dateModified;
+        this.duration = metadata.duration;
+
+        this.mimeTypeResolved = metadata.mimeType != null && !"application/octet-stream".equals(metadata.mimeType);
+        this.mimeType = mimeTypeResolved ? metadata.mimeType : null;
+
+        this.width = metadata.width;
+        this.height = metadata.height;
+        this.boundsResolved = metadata.width > 0 && metadata.height > 0;
+
+        this.orientation = metadata.orientation;
+        this.orientationResolved = metadata.orientation >= 0;
+    }
+
+    /**
+     * Query the metadata of target {@link Uri}, this queries the
+     * provider and must not run on the main thread.
+     *
+     * @param context Android application or activity context.
+     * @param uri Source {@link Uri}.
+     * @param request Request that produced the {@link Uri}, or null.
+     *
+     * @return Result populated from a single provider query.
+     */
+    static MediaPickerResult create(final Context context, final Uri uri, final @Nullable RequestType request) {
+        final Context applicationContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+
+        final Metadata metadata = ContentResolver.SCHEME_CONTENT.equals(uri.getScheme())
+            ? query(applicationContext.getContentResolver(), uri)
+            : Metadata.fromFile(uri);
+
+        return new MediaPickerResult(applicationContext, uri, request, metadata);
+    }
+
+    /**
+     * Create a result and eagerly resolve the values every caller needs,
+     * the file and the mime type.
+     */
+    static MediaPickerResult resolve(final Context context, final Uri uri, final RequestType request) {
+        final MediaPickerResult result = create(context, uri, request);
+
+        result.getFile();
+        result.getMimeType();
+
+        return result;
+    }
+
+    /**
+     * Create results for several Uris and eagerly resolve their files and mime types.
+     * MediaStore items, media and download documents are read with one query per
+     * collection, see {@link MediaPickerUri#getQueryGroups(Context, Collection)},
+     * including the file path, anything else or missed by a group query with its own.
+     *
+     * @param context Android application or activity context.
+     * @param uris Source Uris.
+     * @param request Request that produced the Uris.
+     * @param task Task whose cancellation stops resolving the remaining Uris.
+     * @param onError Called for each Uri whose file could not be resolved.
+     *
+     * @return Results in the order of the Uris, each Uri failing to resolve has a result without a file.
+     */
+    static List<MediaPickerResult> resolveAll(final Context context,
+                                              final List<Uri> uris,
+                                              final RequestType request,
+                                              final MediaPickerTask task,
+                                              final MediaPickerUri.OnResolveError onError) {
+        final Context applicationContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+
+        final Map<Uri, Metadata> batch = queryAll(applicationContext, uris);
+
+        final List<MediaPickerResult> results = new ArrayList<>(uris.size());
+
+        for (final Uri uri : uris) {
+            if (task.isCancelled()) {
+                break;
+            }
+
+            Metadata metadata = batch.get(uri);
+
+            if (metadata == null) {
+                metadata = ContentResolver.SCHEME_CONTENT.equals(uri.getScheme())
+                    ? query(applicationContext.getContentResolver(), uri)
+                    : Metadata.fromFile(uri);
+            }
+
+            final MediaPickerResult result = new MediaPickerResult(applicationContext, uri, request, metadata);
+
+            File file = null;
+
+            try {
+                file = MediaPickerUri.resolveToFile(applicationContext, uri, metadata.path);
+
+            } catch (final IOException e) {
+                onError.onError(uri, e);
+            }
+
+            synchronized (result) {
+                result.file = file;
+                result.fileResolved = true;
+            }
+
+            result.getMimeType();
+
+            results.add(result);
+        }
+
+        return results;
+    }
+
+    /**
+     * Read the metadata of every groupable {@link Uri} with one query per collection.
+     *
+     * @return Metadata keyed by {@link Uri}, Uris a group query missed are left out.
+     */
+    private static Map<Uri, Metadata> queryAll(final Context context, final List<Uri> uris) {
+        final Map<Uri, Metadata> metadata = new HashMap<>();
+
+        for (final Map.Entry<Uri, Map<Uri, String>> group : MediaPickerUri.getQueryGroups(context, uris).entrySet()) {
+            final Map<String, Metadata> rows = new HashMap<>();
+
+            MediaPickerUri.queryRows(context, group.getKey(), getGroupProjection(group.getKey()), new HashSet<>(group.getValue().values()), new MediaPickerUri.OnQueryRow() {
+
+                @Override
+                public void onRow(final String id, final Cursor cursor) {
+                    rows.put(id, Metadata.fromCursor(cursor));
+                }
+            });
+
+            for (final Map.Entry<Uri, String> item : group.getValue().entrySet()) {
+                final Metadata row = rows.get(item.getValue());
+
+                if (row != null) {
+                    metadata.put(item.getKey(), row);
+                }
+            }
+        }
+
+        return metadata;
+    }
+
+    /**
+     * Read every known column in one query.  Providers rejecting unknown
+     * columns, with an {@link IllegalArgumentException} or an
+     * {@link android.database.sqlite.SQLiteException}, are queried again
+     * for everything they expose.
+     */
+    private static Metadata query(final ContentResolver contentResolver, final Uri uri) {
+        Cursor cursor = null;
+
+        try {
+            try {
+                cursor = contentResolver.query(uri, getProjection(uri), null, null, null);
+
+            } catch (final RuntimeException e) {
+
+                cursor = contentResolver.query(uri, null, null, null, null);
+            }
+
+            if (cursor != null && cursor.moveToFirst()) {
+                return Metadata.fromCursor(cursor);
+            }
+
+        } catch (final RuntimeException ignored) {
+
+            // Provider exposes no metadata, everything is resolved lazily.
+
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return new Metadata();
+    }
+
+    /**
+     * @return Columns to read from a collection queried by row id, the downloads
+     * collection only exposes a few of the MediaStore columns.
+     */
+    private static String[] getGroupProjection(final Uri collection) {
+        if (!MediaStore.AUTHORITY.equals(collection.getAuthority())) {
+            return new String[] {MediaStore.MediaColumns._ID, MediaStore.MediaColumns.DATA};
+        }
+
+        final String[] projection = getProjection(collection);
+        final String[] groupProjection = Arrays.copyOf(projection, projection.length + 1);
+
+        groupProjection[projection.length] = MediaStore.MediaColumns._ID;
+
+        return groupProjection;
+    }
+
+    /**
+     * @return Columns of the MediaStore collection target {@link Uri} belongs to.
+     */
+    private static String[] getProjection(final Uri uri) {
+        if (!MediaStore.AUTHORITY.equals(uri.getAuthority())) {
+            return PROJECTION;
+        }
+
+        final List<String> segments = uri.getPathSegments();
+
+        if (segments.contains("images")) {
+            return IMAGES_PROJECTION;
+        }
+
+        if (segments.contains("video")) {
+            return VIDEO_PROJECTION;
+        }
+
+        if (segments.contains("audio")) {
+            return AUDIO_PROJECTION;
+        }
+
+        return PROJECTION;
+    }
+
+    @NonNull
+    public Uri getUri() {
+        return uri;
+    }
+
+    /**
+     * @return Request that produced the result, or null when it was created directly from a {@link Uri}.
+     */
+    @Nullable
+    public RequestType getRequest() {
+        return request;
+    }
+
+    /**
+     * @return Local file backing the result, or null when the provider does not expose one.
+     */
+    @Nullable
+    public synchronized File getFile() {
+        if (!fileResolved) {
+            fileResolved = true;
+
+            if (path != null && new File(path).isFile()) {
+                file = new File(path);
+
+            } else {
+                try {
+                    file = MediaPickerUri.resolveToFile(context, uri);
+
+                } catch (final IOException e) {
+                    file = null;
+                }
+            }
+        }
+
+        return file;
+    }
+
+    /**
+     * @return Mime type reported by the provider, detected from the
+     * signature of the content, or guessed from the extension.
+     */
+    @Nullable
+    public synchronized String getMimeType() {
+        if (!mimeTypeResolved) {
+            mimeTypeResolved = true;
+
+            mimeType = detectMimeType();
+
+            if (mimeType == null && ContentResolver.SCHEME_CONTENT.equals(uri.getScheme())) {
+                mimeType = context.getContentResolver().getType(uri);
+            }
+
+            if (mimeType == null) {
+                final String extension = MimeTypeMap.getFileExtensionFromUrl(uri.toString());
+
+                if (extension != null) {
+                    mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension.toLowerCase(Locale.US));
+                }
+            }
+        }
+
+        return mimeType;
+    }
+
+    /**
+     * @return Size in bytes, or -1 when unknown.
+     */
+    public long getSize() {
+        if (size >= 0) {
+            return size;
+        }
+
+        final File file = getFile();
+
+        return file != null ? file.length() : -1;
+    }
+
+    /**
+     * @return Width in pixels, or 0 when unknown or not an image.
+     */
+    public synchronized int getWidth() {
+        resolveBounds();
+
+        return width;
+    }
+
+    /**
+     * @return Height in pixels, or 0 when unknown or not an image.
+     */
+    public synchronized int getHeight() {
+        resolveBounds();
+
+        return height;
+    }
+
+    /**
+     * @return Clockwise rotation in degrees of an image.
+     */
+    public synchronized int getOrientation() {
+        if (!orientationResolved) {
+            orientationResolved = true;
+
+            orientation = isImage() ? ImageScaler.getRotation(context.getContentResolver(), uri) : 0;
+        }
+
+        return orientation;
+    }
+
+    /**
+     * @return Last modification time in milliseconds, or 0 when unknown.
+     */
+    public long getDateModified() {
+        if (dateModified > 0) {
+            return dateModified;
+        }
+
+        final File file = getFile();
+
+        return file != null ? file.lastModified() : 0;
+    }
+
+    /**
+     * @return Duration of audio or video in milliseconds, or -1 when unknown.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Detect the mime type from the content signature, reading the
+     * resolved file directly when there is one.
+     */
+    private String detectMimeType() {
+        final File file = getFile();
+
+        if (file == null) {
+            return MimeTypeDetector.detect(context, uri);
+        }
+
+        try {
+            final String mimeType = MimeTypeDetector.detect(file);
+
+            if (mimeType != null) {
+                MimeTypeDetector.put(uri, mimeType);
+            }
+
+            return mimeType;
+
+        } catch (final IOException e) {
+
+            return null;
+        }
+    }
+
+    private boolean isImage() {
+        final String mimeType = getMimeType();
+
+        return mimeType != null && mimeType.startsWith("image/");
+    }
+
+    private void resolveBounds() {
+        if (boundsResolved) {
+            return;
+        }
+
+        boundsResolved = true;
+
+        if (!isImage()) {
+            return;
+        }
+
+        try {
+            final BitmapFactory.Options options = ImageScaler.decodeBounds(context.getContentResolver(), uri);
+
+            width = options.outWidth;
+            height = options.outHeight;
+
+        } catch (final IOException | SecurityException ignored) {
+
+            // Dimensions stay unknown.
+        }
+    }
+
+    /**
+     * Values read from the provider, unknown values are negative or null.
+     */
+    private static class Metadata {
+
+        private String path;
+        private String mimeType;
+        private long size = -1;
+        private int width;
+        private int height;
+        private int orientation = -1;
+        private long dateModified;
+        private long duration = -1;
+
+        static Metadata fromCursor(final Cursor cursor) {
+            final Metadata metadata = new Metadata();
+
+            metadata.path = getString(cursor, MediaStore.MediaColumns.DATA);
+            metadata.mimeType = getString(cursor, MediaStore.MediaColumns.MIME_TYPE);
+            metadata.size = getLong(cursor, MediaStore.MediaColumns.SIZE, -1);
+            metadata.width = (int) getLong(cursor, MediaStore.MediaColumns.WIDTH, 0);
+            metadata.height = (int) getLong(cursor, MediaStore.MediaColumns.HEIGHT, 0);
+            metadata.orientation = (int) getLong(cursor, MediaStore.Images.ImageColumns.ORIENTATION, -1);
+            metadata.duration = getLong(cursor, MediaStore.Video.VideoColumns.DURATION, -1);
+
+            // The MediaStore reports modification time in seconds.
+            metadata.dateModified = getLong(cursor, MediaStore.MediaColumns.DATE_MODIFIED, 0) * 1000;
+
+            return metadata;
+        }
+
+        static Metadata fromFile(final Uri uri) {
+            final Metadata metadata = new Metadata();
+
+            if (ContentResolver.SCHEME_FILE.equals(uri.getScheme()) && uri.getPath() != null) {
+                final File file = new File(uri.getPath());
+
+                if (file.isFile()) {
+                    metadata.path = file.getPath();
+                    metadata.size = file.length();
+                    metadata.dateModified = file.lastModified();
+                }
+            }
+
+            return metadata;
+        }
+
+        private static String getString(final Cursor cursor, final String column) {
+            final int index = cursor.getColumnIndex(column);
+
+            return index >= 0 && !cursor.isNull(index) ? cursor.getString(index) : null;
+        }
+
+        private static long getLong(final Cursor cursor, final String column, final long fallback) {
+            final int index = cursor.getColumnIndex(column);
+
+            if (index < 0 || cursor.isNull(index)) {
+                return fallback;
+            }
+
+            try {
+                return cursor.getLong(index);
+
+            } catch (final RuntimeException e) {
+
+                // Some providers store numbers as text that does not parse.
+                return fallback;
+            }
+        }
+    }
+}
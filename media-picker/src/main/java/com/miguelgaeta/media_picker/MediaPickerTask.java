@@ -0,0 +1,218 @@
+package com.miguelgaeta.media_picker;
+
+import android.app.Activity;
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.LifecycleOwner;
+import android.arch.lifecycle.OnLifecycleEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Handle to picker work running in the background.  Once cancelled, no
+ * further callbacks are delivered for it.
+ *
+ * A task bound to a provider destroyed by a configuration change keeps running
+ * and holds on to its result until the recreated provider resumes it, see
+ * {@link MediaPicker#resumeResultAsync(MediaPicker.Provider, MediaPicker.OnResolvedResult)}.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public final class MediaPickerTask {
+
+    /**
+     * Oldest detached tasks beyond this count are considered abandoned.
+     */
+    private static final int MAX_DETACHED = 4;
+
+    /**
+     * Tasks waiting for their recreated provider, only accessed on the main thread.
+     */
+    private static final List<MediaPickerTask> detachedTasks = new ArrayList<>();
+
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    private final Class<?> callbackType;
+
+    private Object callback;
+
+    private Object owner;
+
+    /**
+     * Type of the last bound provider, kept once detached so no destroyed instance is retained.
+     */
+    private Class<?> ownerType;
+
+    private Lifecycle lifecycle;
+
+    private boolean detached;
+
+    private Outcome parked;
+
+    private final LifecycleObserver observer = new LifecycleObserver() {
+
+        @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+        public void onDestroy() {
+            if (isChangingConfigurations(owner)) {
+                detach();
+
+            } else {
+                cancel();
+            }
+        }
+    };
+
+    /**
+     * @param callbackType Type of the callback the result is delivered to.
+     * @param callback Callback the result is delivered to.
+     */
+    MediaPickerTask(final Class<?> callbackType, final Object callback) {
+        this.callbackType = callbackType;
+        this.callback = callback;
+    }
+
+    /**
+     * Cancel the task when target lifecycle owner is destroyed, must
+     * be called on the main thread.
+     */
+    void bind(final Object owner) {
+        if (!(owner instanceof LifecycleOwner)) {
+            return;
+        }
+
+        final Lifecycle lifecycle = ((LifecycleOwner) owner).getLifecycle();
+
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            cancel();
+
+            return;
+        }
+
+        this.owner = owner;
+        this.ownerType = owner.getClass();
+        this.lifecycle = lifecycle;
+        this.lifecycle.addObserver(observer);
+    }
+
+    /**
+     * Stop observing the bound lifecycle, must be called on the main thread.
+     */
+    void unbind() {
+        if (lifecycle != null) {
+            lifecycle.removeObserver(observer);
+            lifecycle = null;
+        }
+    }
+
+    /**
+     * Deliver the outcome to the callback unless the task was cancelled, or hold
+     * on to it while the task waits for its provider, must be called on the main thread.
+     *
+     * @param outcome Outcome of the task, or null to only release the task.
+     */
+    void deliver(final Outcome outcome) {
+        if (detached && outcome != null && !isCancelled()) {
+            parked = outcome;
+
+            return;
+        }
+
+        unbind();
+
+        detachedTasks.remove(this);
+
+        if (outcome != null && !isCancelled()) {
+            outcome.deliver(callback);
+        }
+    }
+
+    /**
+     * Bind the oldest task detached from a provider of the same type to its
+     * recreated instance, delivering its outcome if it is already known.
+     * Must be called on the main thread.
+     *
+     * @param owner Recreated provider.
+     * @param callbackType Type of the callback.
+     * @param callback Callback of the recreated provider.
+     *
+     * @return Resumed task, or null if none was waiting.
+     */
+    static MediaPickerTask resume(final Object owner, final Class<?> callbackType, final Object callback) {
+        for (final MediaPickerTask task : detachedTasks) {
+            if (task.callbackType == callbackType && task.ownerType == owner.getClass()) {
+                detachedTasks.remove(task);
+
+                task.detached = false;
+                task.callback = callback;
+                task.bind(owner);
+
+                final Outcome outcome = task.parked;
+
+                if (outcome != null) {
+                    task.parked = null;
+                    task.deliver(outcome);
+                }
+
+                return task;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Cancel the task, any pending result is dropped.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Keep running after the provider was destroyed by a configuration change.
+     */
+    private void detach() {
+        unbind();
+
+        owner = null;
+        callback = null;
+        detached = true;
+        detachedTasks.add(this);
+
+        while (detachedTasks.size() > MAX_DETACHED) {
+            final MediaPickerTask abandoned = detachedTasks.remove(0);
+
+            abandoned.cancel();
+            abandoned.parked = null;
+        }
+    }
+
+    /**
+     * @return True if target provider, or the activity hosting it, is being recreated.
+     */
+    private static boolean isChangingConfigurations(final Object owner) {
+        if (owner instanceof Activity) {
+            return ((Activity) owner).isChangingConfigurations();
+        }
+
+        if (owner instanceof MediaPicker.Provider) {
+            final Object context = ((MediaPicker.Provider) owner).getContext();
+
+            return context instanceof Activity && ((Activity) context).isChangingConfigurations();
+        }
+
+        return false;
+    }
+
+    /**
+     * Result of a task, delivered to whichever callback the task has by then.
+     */
+    interface Outcome {
+
+        void deliver(final Object callback);
+    }
+}
@@ -10,9 +10,19 @@ import android.os.Build;
 import android.os.Environment;
 import android.provider.DocumentsContract;
 import android.provider.MediaStore;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by Miguel Gaeta on 7/20/15.
@@ -27,6 +37,160 @@ public class MediaPickerUri {
     private static final String AUTHORITY_DOWNLOADS_DOCUMENT = "com.android.providers.downloads.documents";
     private static final String AUTHORITY_MEDIA_DOCUMENT = "com.android.providers.media.documents";
 
+    private static final Uri DOWNLOADS_CONTENT_URI = Uri.parse("content://downloads/public_downloads");
+
+    /**
+     * Stay well below the SQLite limit on bound arguments per statement.
+     */
+    private static final int MAX_QUERY_ARGUMENTS = 500;
+
+    private static volatile UriPathCache resolutionCache;
+
+    private static final UriResolver EXTERNAL_STORAGE_DOCUMENT_RESOLVER = new UriResolver() {
+
+        @Override
+        public String getPath(final @NonNull Context context, final @NonNull Uri uri) throws IOException {
+            return isDocumentsProviderUri(context, uri) ? getExternalStorageDocumentPath(context, uri) : null;
+        }
+    };
+
+    private static final UriResolver DOWNLOADS_DOCUMENT_RESOLVER = new UriResolver() {
+
+        @Override
+        public String getPath(final @NonNull Context context, final @NonNull Uri uri) throws IOException {
+            return isDocumentsProviderUri(context, uri) ? getDownloadsDocumentPath(context, uri) : null;
+        }
+    };
+
+    private static final UriResolver MEDIA_DOCUMENT_RESOLVER = new UriResolver() {
+
+        @Override
+        public String getPath(final @NonNull Context context, final @NonNull Uri uri) throws IOException {
+            return isDocumentsProviderUri(context, uri) ? getMediaDocumentPath(context, uri) : null;
+        }
+    };
+
+    private static final UriResolver GOOGLE_PHOTOS_RESOLVER = new UriResolver() {
+
+        @Override
+        public String getPath(final @NonNull Context context, final @NonNull Uri uri) {
+            return uri.getLastPathSegment();
+        }
+    };
+
+    private static final UriResolver FILE_RESOLVER = new UriResolver() {
+
+        @Override
+        public String getPath(final @NonNull Context context, final @NonNull Uri uri) throws IOException {
+            final String path = uri.getPath();
+
+            if (path == null) {
+
+                throw new IOException("URI file path cannot be null.");
+            }
+
+            return path;
+        }
+    };
+
+    /**
+     * Resolvers keyed by authority and by scheme.  Both tables are replaced
+     * as a whole on registration so lookups never need to lock.
+     */
+    private static volatile Map<String, UriResolver> authorityResolvers = createAuthorityResolvers();
+    private static volatile Map<String, UriResolver> schemeResolvers = createSchemeResolvers();
+
+    /**
+     * Resolve every {@link Uri} of target authority with a custom strategy, replacing
+     * any built-in or previously registered one.  Useful to map an application's
+     * own providers directly to files without a provider query.
+     *
+     * @param authority Provider authority.
+     * @param resolver Strategy for the authority, or null to restore the default behavior.
+     */
+    public static synchronized void registerResolver(final @NonNull String authority, final @Nullable UriResolver resolver) {
+        final Map<String, UriResolver> resolvers = new HashMap<>(authorityResolvers);
+
+        resolvers.remove(authority);
+
+        if (resolver != null) {
+            resolvers.put(authority, resolver);
+
+        } else {
+            final UriResolver defaultResolver = createAuthorityResolvers().get(authority);
+
+            if (defaultResolver != null) {
+                resolvers.put(authority, defaultResolver);
+            }
+        }
+
+        authorityResolvers = resolvers;
+    }
+
+    /**
+     * Resolve every {@link Uri} of target scheme whose authority has no resolver
+     * with a custom strategy, replacing any built-in or previously registered one.
+     *
+     * @param scheme Uri scheme.
+     * @param resolver Strategy for the scheme, or null to restore the default behavior.
+     */
+    public static synchronized void registerSchemeResolver(final @NonNull String scheme, final @Nullable UriResolver resolver) {
+        final Map<String, UriResolver> resolvers = new HashMap<>(schemeResolvers);
+
+        resolvers.remove(scheme);
+
+        if (resolver != null) {
+            resolvers.put(scheme, resolver);
+
+        } else {
+            final UriResolver defaultResolver = createSchemeResolvers().get(scheme);
+
+            if (defaultResolver != null) {
+                resolvers.put(scheme, defaultResolver);
+            }
+        }
+
+        schemeResolvers = resolvers;
+    }
+
+    /**
+     * Map the Uris of a {@link android.support.v4.content.FileProvider} directly
+     * to files.  Each configured path name is mapped to the directory it
+     * shares, as declared in the provider path configuration.
+     *
+     * @param authority File provider authority.
+     * @param roots Shared directories keyed by their configured path name.
+     */
+    public static void registerFileProvider(final @NonNull String authority, final @NonNull Map<String, File> roots) {
+        registerResolver(authority, new FileProviderResolver(roots));
+    }
+
+    /**
+     * Remember resolved files so repeat resolutions of the same {@link Uri} skip the
+     * provider query.  Entries are validated against the file size and modification
+     * time and are invalidated when the MediaStore reports a change.
+     *
+     * @param context Android application or activity context.
+     * @param maxEntries Maximum number of resolutions to remember.
+     */
+    public static synchronized void enableResolutionCache(final Context context, final int maxEntries) {
+        disableResolutionCache();
+
+        resolutionCache = new UriPathCache(context, maxEntries);
+    }
+
+    /**
+     * Forget every cached resolution and stop observing the MediaStore.
+     *
+     * @see #enableResolutionCache(Context, int)
+     */
+    public static synchronized void disableResolutionCache() {
+        if (resolutionCache != null) {
+            resolutionCache.release();
+            resolutionCache = null;
+        }
+    }
+
     /**
      * Convert a Uri into a file if possible.
      *
@@ -41,6 +205,26 @@ public class MediaPickerUri {
      */
     public static File resolveToFile(Context context, Uri uri) throws IOException {
 
+        final long start = Metrics.start(MediaPickerMetrics.Phase.RESOLVE);
+
+        File file = null;
+        Throwable error = null;
+
+        try {
+            return file = resolveFile(context, uri);
+
+        } catch (final IOException | RuntimeException e) {
+            error = e;
+
+            throw e;
+
+        } finally {
+            Metrics.end(MediaPickerMetrics.Phase.RESOLVE, start, file != null && start != 0 ? file.length() : -1, error);
+        }
+    }
+
+    private static File resolveFile(final Context context, final Uri uri) throws IOException {
+
         if (context == null) {
 
             throw new IOException("A valid android application context is required.");
@@ -51,26 +235,231 @@ public class MediaPickerUri {
             throw new IOException("File URI cannot be null.");
         }
 
-        final String path = getPath(context, uri);
+        final UriPathCache cache = resolutionCache;
 
-        if (path == null) {
+        if (cache != null) {
+            final File cachedFile = cache.get(uri);
 
-            throw new IOException("File path was not found.");
+            if (cachedFile != null) {
+                return cachedFile;
+            }
         }
 
-        if (!isLocal(path)) {
+        final File file = getLocalFile(getPath(context, uri));
 
-            throw new IOException("File path was found, but path must be a local URI.");
+        if (cache != null) {
+            cache.put(uri, file);
+        }
+
+        return file;
+    }
+
+    /**
+     * Convert a Uri into a file, falling back to a local copy of the content when
+     * no usable file path exists, such as for non-primary storage volumes, cloud
+     * providers or scoped storage.  The copy is written to a library managed
+     * cache directory without buffering the content in memory.
+     *
+     * @see #resolveToFile(Context, Uri)
+     *
+     * @param context Android application or activity context.
+     * @param uri Source Uri.
+     *
+     * @return Associated file on device, or a local copy of its content.
+     *
+     * @throws IOException Thrown if the content can neither be resolved nor copied.
+     */
+    public static File resolveToLocalFile(final Context context, final Uri uri) throws IOException {
+
+        return resolveToLocalFile(context, uri, null);
+    }
+
+    /**
+     * Large content from seekable providers is copied as several concurrent ranges
+     * and an interrupted copy resumes from the ranges already on disk.
+     *
+     * @see #resolveToLocalFile(Context, Uri)
+     *
+     * @param onProgress Optional callback reporting copy progress, invoked on the copying threads.
+     */
+    public static File resolveToLocalFile(final Context context, final Uri uri, final @Nullable OnCopyProgress onProgress) throws IOException {
+
+        try {
+            return resolveToFile(context, uri);
+
+        } catch (final IOException e) {
+
+            if (context == null || uri == null || !"content".equals(uri.getScheme())) {
+                throw e;
+            }
+
+            return UriCopier.copy(context, uri, onProgress);
+        }
+    }
+
+    /**
+     * Read the metadata of a {@link Uri}, its file, size, mime type, dimensions,
+     * orientation, modification date and duration, with a single provider query.
+     * Values the provider does not expose are looked up on first access.
+     *
+     * @param context Android application or activity context.
+     * @param uri Source Uri.
+     *
+     * @return Metadata of the {@link Uri}.
+     */
+    public static MediaPickerResult resolveToResult(final Context context, final Uri uri) {
+
+        return MediaPickerResult.create(context, uri, null);
+    }
+
+    /**
+     * @see #resolveToFiles(Context, Collection, OnResolveError)
+     */
+    public static Map<Uri, File> resolveToFiles(final Context context, final Collection<Uri> uris) throws IOException {
+
+        return resolveToFiles(context, uris, null);
+    }
+
+    /**
+     * Convert several Uris into files at once.  MediaStore items, media and download
+     * documents are grouped by collection and each group is resolved with a single query,
+     * anything else or anything a group query missed is resolved
+     * individually with {@link #resolveToFile(Context, Uri)}.
+     *
+     * @param context Android application or activity context.
+     * @param uris Source Uris.
+     * @param onError Optional callback for each Uri that could not be resolved.
+     *
+     * @return Resolved files keyed by their source Uri, in the order provided.
+     *
+     * @throws IOException Thrown if no context is provided.
+     */
+    public static Map<Uri, File> resolveToFiles(final Context context,
+                                                final Collection<Uri> uris,
+                                                final @Nullable OnResolveError onError) throws IOException {
+
+        if (context == null) {
+
+            throw new IOException("A valid android application context is required.");
+        }
+
+        final UriPathCache cache = resolutionCache;
+
+        final List<Uri> uncached = new ArrayList<>();
+
+        for (final Uri uri : uris) {
+
+            if (uri != null && (cache == null || cache.get(uri) == null)) {
+                uncached.add(uri);
+            }
+        }
+
+        final Map<Uri, Map<Uri, String>> groups = getQueryGroups(context, uncached);
+
+        final Map<Uri, String> paths = new HashMap<>();
+
+        for (final Map.Entry<Uri, Map<Uri, String>> group : groups.entrySet()) {
+
+            final Map<String, String> groupPaths = getDataColumns(context, group.getKey(), new HashSet<>(group.getValue().values()));
+
+            for (final Map.Entry<Uri, String> item : group.getValue().entrySet()) {
+
+                paths.put(item.getKey(), groupPaths.get(item.getValue()));
+            }
+        }
+
+        final Map<Uri, File> files = new LinkedHashMap<>();
+
+        for (final Uri uri : uris) {
+
+            try {
+                final String path = paths.get(uri);
+
+                if (path != null) {
+
+                    final File file = getLocalFile(path);
+
+                    if (cache != null) {
+                        cache.put(uri, file);
+                    }
+
+                    files.put(uri, file);
+
+                } else {
+
+                    files.put(uri, resolveToFile(context, uri));
+                }
+
+            } catch (final IOException e) {
+
+                if (onError != null) {
+                    onError.onError(uri, e);
+                }
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * Convert a Uri into a file, trying a path already read from its provider first.
+     *
+     * @see #resolveToFile(Context, Uri)
+     *
+     * @param path Data column value read for the Uri, or null.
+     */
+    static File resolveToFile(final Context context, final Uri uri, final @Nullable String path) throws IOException {
+
+        if (path == null || !isLocal(path) || !new File(path).isFile()) {
+
+            return resolveToFile(context, uri);
         }
 
         final File file = new File(path);
 
-        if (!file.exists()) {
+        final UriPathCache cache = resolutionCache;
 
-            throw new IOException("File path was found, but file does not exist.");
+        if (cache != null) {
+            cache.put(uri, file);
         }
 
-        return new File(path);
+        return file;
+    }
+
+    /**
+     * Group the Uris whose rows can be looked up by id in a collection, MediaStore
+     * items along with media and download documents.
+     *
+     * @param context Android application or activity context.
+     * @param uris Source Uris.
+     *
+     * @return Row ids of each groupable Uri, keyed by the {@link Uri} of their collection.
+     */
+    static Map<Uri, Map<Uri, String>> getQueryGroups(final Context context, final Collection<Uri> uris) {
+
+        final Map<Uri, Map<Uri, String>> groups = new LinkedHashMap<>();
+
+        for (final Uri uri : uris) {
+
+            if (uri == null) {
+                continue;
+            }
+
+            final String id = uri.getLastPathSegment();
+
+            if (MediaStore.AUTHORITY.equals(uri.getAuthority()) && id != null && TextUtils.isDigitsOnly(id)) {
+
+                final String path = uri.getPath();
+
+                addToQueryGroup(groups, uri, uri.buildUpon().path(path.substring(0, path.lastIndexOf('/'))).build(), id);
+
+            } else if (isDocumentsProviderUri(context, uri)) {
+
+                addToQueryGroup(groups, uri);
+            }
+        }
+
+        return groups;
     }
 
     /**
@@ -101,9 +490,20 @@ public class MediaPickerUri {
      */
     private static String getPath(final Context context, final Uri uri) throws IOException {
 
-        if (isDocumentsProviderUri(context, uri)) {
+        final String authority = uri.getAuthority();
+        final UriResolver authorityResolver = authority != null ? authorityResolvers.get(authority) : null;
 
-            return getPathFromDocumentsProvider(context, uri);
+        if (authorityResolver != null) {
+
+            final String path = authorityResolver.getPath(context, uri);
+
+            if (path != null) {
+                return path;
+            }
+
+        } else if (isDocumentsProviderUri(context, uri)) {
+
+            throw new IOException("Unknown URI document authority encountered: " + authority);
         }
 
         if (uri.getScheme() == null) {
@@ -111,31 +511,42 @@ public class MediaPickerUri {
             throw new IOException("Unknown URI scheme encountered.");
         }
 
-        switch (uri.getScheme()) {
+        final UriResolver schemeResolver = schemeResolvers.get(uri.getScheme());
 
-            case "content":
+        if (schemeResolver != null) {
 
-                if (AUTHORITY_GOOGLE_PHOTOS.equals(uri.getAuthority())) {
+            final String path = schemeResolver.getPath(context, uri);
 
-                    return uri.getLastPathSegment();
-                }
+            if (path != null) {
+                return path;
+            }
+        }
 
-                return getDataColumn(context, uri, null, null);
+        if ("content".equals(uri.getScheme())) {
 
-            case "file":
+            return getDataColumn(context, uri, null, null);
+        }
 
-                final String path = uri.getPath();
+        throw new IOException("Unknown URI scheme encountered: " + uri.getScheme());
+    }
 
-                if (path == null) {
+    private static Map<String, UriResolver> createAuthorityResolvers() {
+        final Map<String, UriResolver> resolvers = new HashMap<>();
 
-                    throw new IOException("URI file path cannot be null.");
-                }
+        resolvers.put(AUTHORITY_EXTERNAL_STORAGE, EXTERNAL_STORAGE_DOCUMENT_RESOLVER);
+        resolvers.put(AUTHORITY_DOWNLOADS_DOCUMENT, DOWNLOADS_DOCUMENT_RESOLVER);
+        resolvers.put(AUTHORITY_MEDIA_DOCUMENT, MEDIA_DOCUMENT_RESOLVER);
+        resolvers.put(AUTHORITY_GOOGLE_PHOTOS, GOOGLE_PHOTOS_RESOLVER);
 
-                return path;
+        return resolvers;
+    }
 
-            default:
-                throw new IOException("Unknown URI scheme encountered: " + uri.getScheme());
-        }
+    private static Map<String, UriResolver> createSchemeResolvers() {
+        final Map<String, UriResolver> resolvers = new HashMap<>();
+
+        resolvers.put("file", FILE_RESOLVER);
+
+        return resolvers;
     }
 
     /**
@@ -152,90 +563,97 @@ public class MediaPickerUri {
     }
 
     /**
-     * Extract a file path from the documents provided.  If a path cannot be
-     * found throws an IOException.
+     * Extract a file path from an external storage document, looking up
+     * the root of non-primary volumes in the {@link StorageVolumeIndex}.
      *
      * @param context Android {@link Context} object.
      * @param uri Android {@link Uri} object.
      *
      * @return Discovered file path.
      *
-     * @throws IOException Throw from any null file path or unexpected authority.
+     * @throws IOException Thrown if the document volume is not mounted.
      */
     @TargetApi(Build.VERSION_CODES.KITKAT)
-    private static String getPathFromDocumentsProvider(final Context context, final Uri uri) throws IOException {
-
-        if (uri.getAuthority() == null) {
+    private static String getExternalStorageDocumentPath(final Context context, final Uri uri) throws IOException {
 
-            throw new IOException("URI authority cannot be null.");
-        }
+        final String[] split = DocumentsContract.getDocumentId(uri).split(":", 2);
+        final String type = split[0];
+        final String path = split.length > 1 ? split[1] : "";
 
-        final String documentId = DocumentsContract.getDocumentId(uri);
+        if ("primary".equalsIgnoreCase(type)) {
 
-        switch (uri.getAuthority()) {
+            return Environment.getExternalStorageDirectory() + "/" + path;
+        }
 
-            case AUTHORITY_EXTERNAL_STORAGE: {
+        final File root = StorageVolumeIndex.get(context).getRoot(type);
 
-                final String[] split = documentId.split(":");
-                final String type = split[0];
+        if (root == null) {
 
-                if ("primary".equalsIgnoreCase(type)) {
+            throw new IOException("Unable to find external storage volume: " + type);
+        }
 
-                    return Environment.getExternalStorageDirectory() + "/" + split[1];
-                }
+        return root + "/" + path;
+    }
 
-                throw new IOException("Unable to handle non-primary external storage volumes.");
-            }
-            case AUTHORITY_DOWNLOADS_DOCUMENT: {
+    /**
+     * Extract a file path from a downloads document.
+     *
+     * @param context Android {@link Context} object.
+     * @param uri Android {@link Uri} object.
+     *
+     * @return Discovered file path.
+     *
+     * @throws IOException Thrown if the download cannot be found.
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static String getDownloadsDocumentPath(final Context context, final Uri uri) throws IOException {
 
-                final Uri contentUri = Uri.parse("content://downloads/public_downloads");
+        try {
+            final Uri contentUriAppended = ContentUris.withAppendedId(DOWNLOADS_CONTENT_URI, Long.valueOf(DocumentsContract.getDocumentId(uri)));
 
-                try {
-                    final Uri contentUriAppended = ContentUris.withAppendedId(contentUri, Long.valueOf(documentId));
+            final String path = getDataColumn(context, contentUriAppended, null, null);
 
-                    final String path = getDataColumn(context, contentUriAppended, null, null);
+            if (path == null) {
+                throw new IOException("Unable to find downloaded document path.");
+            }
 
-                    if (path == null) {
-                        throw new IOException("Unable to find downloaded document path.");
-                    }
+            return path;
 
-                    return path;
+        } catch (NumberFormatException e) {
+            throw new IOException("Unable to fetch document id.");
+        }
+    }
 
-                } catch (NumberFormatException e) {
-                    throw new IOException("Unable to fetch document id.");
-                }
-            }
-            case AUTHORITY_MEDIA_DOCUMENT: {
-
-                final String[] split = documentId.split(":");
-                final String type = split[0];
-
-                Uri contentUri = null;
-                if ("image".equals(type)) {
-                    contentUri = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
-                } else if ("video".equals(type)) {
-                    contentUri = MediaStore.Video.Media.EXTERNAL_CONTENT_URI;
-                } else if ("audio".equals(type)) {
-                    contentUri = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
-                }
+    /**
+     * Extract a file path from a media document.
+     *
+     * @param context Android {@link Context} object.
+     * @param uri Android {@link Uri} object.
+     *
+     * @return Discovered file path.
+     *
+     * @throws IOException Thrown if the media cannot be found.
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static String getMediaDocumentPath(final Context context, final Uri uri) throws IOException {
 
-                final String selection = "_id=?";
-                final String[] selectionArgs = new String[] {
-                    split[1]
-                };
+        final String[] split = DocumentsContract.getDocumentId(uri).split(":");
+        final String type = split[0];
 
-                final String path = getDataColumn(context, contentUri, selection, selectionArgs);
+        final Uri contentUri = getMediaContentUri(type);
 
-                if (path == null) {
-                    throw new IOException("Unable to find media document path.");
-                }
+        final String selection = "_id=?";
+        final String[] selectionArgs = new String[] {
+            split[1]
+        };
 
-                return path;
-            }
-            default:
+        final String path = getDataColumn(context, contentUri, selection, selectionArgs);
 
-                throw new IOException("Unknown URI document authority encountered: " + uri.getAuthority());
+        if (path == null) {
+            throw new IOException("Unable to find media document path.");
         }
+
+        return path;
     }
 
     /**
@@ -281,6 +699,190 @@ public class MediaPickerUri {
         return null;
     }
 
+    /**
+     * Add a documents provider {@link Uri} to the query group of its collection
+     * if its rows can be looked up by id, media and downloads documents.
+     *
+     * @param groups Row ids of each source Uri, grouped by collection.
+     * @param uri Documents provider {@link Uri}.
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static void addToQueryGroup(final Map<Uri, Map<Uri, String>> groups, final Uri uri) {
+
+        final String documentId = DocumentsContract.getDocumentId(uri);
+
+        final UriResolver resolver = authorityResolvers.get(uri.getAuthority());
+
+        Uri contentUri = null;
+        String id = documentId;
+
+        if (resolver == MEDIA_DOCUMENT_RESOLVER) {
+
+            final String[] split = documentId.split(":");
+
+            if (split.length == 2) {
+                contentUri = getMediaContentUri(split[0]);
+                id = split[1];
+            }
+
+        } else if (resolver == DOWNLOADS_DOCUMENT_RESOLVER && TextUtils.isDigitsOnly(documentId)) {
+
+            contentUri = DOWNLOADS_CONTENT_URI;
+        }
+
+        if (contentUri != null) {
+            addToQueryGroup(groups, uri, contentUri, id);
+        }
+    }
+
+    private static void addToQueryGroup(final Map<Uri, Map<Uri, String>> groups, final Uri uri, final Uri contentUri, final String id) {
+
+        Map<Uri, String> group = groups.get(contentUri);
+
+        if (group == null) {
+            groups.put(contentUri, group = new LinkedHashMap<>());
+        }
+
+        group.put(uri, id);
+    }
+
+    /**
+     * Get the value of the data column for several rows of a collection.
+     *
+     * @see #queryRows(Context, Uri, String[], Collection, OnQueryRow)
+     *
+     * @param context The context.
+     * @param contentUri The collection Uri to query.
+     * @param ids Row ids to look up.
+     *
+     * @return Data column values keyed by row id.
+     */
+    private static Map<String, String> getDataColumns(final Context context, final Uri contentUri, final Collection<String> ids) {
+
+        final Map<String, String> paths = new HashMap<>();
+
+        final String[] projection = {
+            "_id", "_data"
+        };
+
+        queryRows(context, contentUri, projection, ids, new OnQueryRow() {
+
+            @Override
+            public void onRow(final String id, final Cursor cursor) {
+                paths.put(id, cursor.getString(cursor.getColumnIndexOrThrow("_data")));
+            }
+        });
+
+        return paths;
+    }
+
+    /**
+     * Read several rows of a collection with a single query per {@link #MAX_QUERY_ARGUMENTS}
+     * ids.  Failures are not thrown, missing rows are left for the caller to resolve one by one.
+     *
+     * @param context The context.
+     * @param contentUri The collection Uri to query.
+     * @param projection Columns to read, including {@code _id}.
+     * @param ids Row ids to look up.
+     * @param onRow Called for every row found.
+     */
+    static void queryRows(final Context context, final Uri contentUri, final String[] projection, final Collection<String> ids, final OnQueryRow onRow) {
+
+        final List<String> remaining = new ArrayList<>(ids);
+
+        for (int start = 0; start < remaining.size(); start += MAX_QUERY_ARGUMENTS) {
+
+            final List<String> selectionArgs = remaining.subList(start, Math.min(start + MAX_QUERY_ARGUMENTS, remaining.size()));
+
+            final StringBuilder selection = new StringBuilder("_id IN (");
+
+            for (int i = 0; i < selectionArgs.size(); i++) {
+                selection.append(i == 0 ? "?" : ",?");
+            }
+
+            selection.append(")");
+
+            Cursor cursor = null;
+
+            try {
+
+                cursor = context.getContentResolver().query(contentUri, projection, selection.toString(), selectionArgs.toArray(new String[selectionArgs.size()]), null);
+
+                if (cursor != null) {
+
+                    final int idColumn = cursor.getColumnIndexOrThrow("_id");
+
+                    while (cursor.moveToNext()) {
+                        onRow.onRow(cursor.getString(idColumn), cursor);
+                    }
+                }
+
+            } catch (final RuntimeException ignored) {
+
+                // Providers rejecting the selection or projection, with an IllegalArgumentException,
+                // SQLiteException or UnsupportedOperationException, leave each item to be resolved individually.
+
+            } finally {
+
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the MediaStore collection for a media document type.
+     *
+     * @param type Document type prefix, image, video or audio.
+     *
+     * @return Collection {@link Uri} or null if the type is unknown.
+     */
+    private static Uri getMediaContentUri(final String type) {
+
+        switch (type) {
+            case "image":
+                return MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
+            case "video":
+                return MediaStore.Video.Media.EXTERNAL_CONTENT_URI;
+            case "audio":
+                return MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
+        }
+
+        return null;
+    }
+
+    /**
+     * Verify a discovered path points at an existing local file.
+     *
+     * @param path Discovered path, may be null.
+     *
+     * @return Associated file.
+     *
+     * @throws IOException Thrown if the path is missing, remote or does not exist.
+     */
+    private static File getLocalFile(final String path) throws IOException {
+
+        if (path == null) {
+
+            throw new IOException("File path was not found.");
+        }
+
+        if (!isLocal(path)) {
+
+            throw new IOException("File path was found, but path must be a local URI.");
+        }
+
+        final File file = new File(path);
+
+        if (!file.exists()) {
+
+            throw new IOException("File path was found, but file does not exist.");
+        }
+
+        return file;
+    }
+
     /**
      * Checks if a target URL is local.
      *
@@ -292,4 +894,28 @@ public class MediaPickerUri {
 
         return url != null && !url.startsWith("http://") && !url.startsWith("https://");
     }
+
+    /**
+     * Invoked for each Uri of a batch that could not be resolved.
+     */
+    public interface OnResolveError {
+
+        void onError(final Uri uri, final IOException e);
+    }
+
+    /**
+     * Reads a row found by {@link #queryRows(Context, Uri, String[], Collection, OnQueryRow)}.
+     */
+    interface OnQueryRow {
+
+        void onRow(final String id, final Cursor cursor);
+    }
+
+    /**
+     * Reports progress while content is copied to a local file.
+     */
+    public interface OnCopyProgress {
+
+        void onProgress(final long copiedBytes, final long totalBytes);
+    }
 }
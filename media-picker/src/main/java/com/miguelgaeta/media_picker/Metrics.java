@@ -0,0 +1,49 @@
+package com.miguelgaeta.media_picker;
+
+/**
+ * Dispatches phase timings to the installed {@link MediaPickerMetrics}.
+ *
+ * Phases are bracketed by {@link #start(MediaPickerMetrics.Phase)} and
+ * {@link #end(MediaPickerMetrics.Phase, long, long, Throwable)}.  Without
+ * a listener the start token is zero and ending is a no-op.
+ */
+class Metrics {
+
+    private static volatile MediaPickerMetrics listener;
+
+    static void setListener(final MediaPickerMetrics listener) {
+        Metrics.listener = listener;
+    }
+
+    /**
+     * @return Token to end the phase with, zero when no listener is installed.
+     */
+    static long start(final MediaPickerMetrics.Phase phase) {
+        final MediaPickerMetrics listener = Metrics.listener;
+
+        if (listener == null) {
+            return 0;
+        }
+
+        listener.onStart(phase);
+
+        return System.nanoTime();
+    }
+
+    /**
+     * @param start Token returned when the phase started.
+     * @param bytes Bytes processed, or -1 when not applicable.
+     * @param error Failure that ended the phase, or null.
+     */
+    static void end(final MediaPickerMetrics.Phase phase, final long start, final long bytes, final Throwable error) {
+        if (start == 0) {
+            return;
+        }
+
+        final MediaPickerMetrics listener = Metrics.listener;
+
+        if (listener != null) {
+            listener.onEnd(phase, System.nanoTime() - start, bytes, error);
+        }
+    }
+}
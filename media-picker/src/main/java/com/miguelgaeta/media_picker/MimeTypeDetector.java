@@ -0,0 +1,361 @@
+package com.miguelgaeta.media_picker;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Detects the mime type of media from the signature in its first bytes.
+ *
+ * Unlike the provider reported type or the extension, the signature is present
+ * for extension-less camera captures and needs no provider round trip when the
+ * content is a local file.  Results for a {@link Uri} are remembered so later
+ * lookups, like the encoder prefix or the crop decision, cost nothing.  File Uris
+ * are remembered by path, size and modification time, so a destination reused for
+ * another capture is detected again, other Uris until their request completes.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public final class MimeTypeDetector {
+
+    /**
+     * Enough bytes to hold every supported signature.
+     */
+    static final int HEADER_SIZE = 64;
+
+    private static final int MAX_CACHE_ENTRIES = 256;
+
+    private static final Map<String, String> cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+            return size() > MAX_CACHE_ENTRIES;
+        }
+    };
+
+    private MimeTypeDetector() {
+
+    }
+
+    /**
+     * Detect the mime type of the content behind a {@link Uri}, reading a file
+     * directly for file Uris and the start of the stream otherwise.
+     *
+     * @param context Android application or activity context.
+     * @param uri Source {@link Uri}.
+     *
+     * @return Detected mime type, or null if the signature is not recognized.
+     */
+    @Nullable
+    public static String detect(final @NonNull Context context, final @NonNull Uri uri) {
+        final String key = getKey(uri);
+
+        String mimeType;
+
+        synchronized (cache) {
+            mimeType = cache.get(key);
+        }
+
+        if (mimeType != null) {
+            return mimeType;
+        }
+
+        try {
+            if (ContentResolver.SCHEME_FILE.equals(uri.getScheme()) && uri.getPath() != null) {
+                mimeType = detect(new File(uri.getPath()));
+
+            } else {
+                final InputStream inputStream = context.getContentResolver().openInputStream(uri);
+
+                if (inputStream != null) {
+                    try {
+                        mimeType = detect(inputStream);
+
+                    } finally {
+                        inputStream.close();
+                    }
+                }
+            }
+
+        } catch (final IOException | SecurityException ignored) {
+
+            // Unreadable content has no detectable type.
+        }
+
+        if (mimeType != null) {
+            synchronized (cache) {
+                cache.put(key, mimeType);
+            }
+        }
+
+        return mimeType;
+    }
+
+    /**
+     * @return Previously detected mime type of the current content of a {@link Uri}, or null.
+     */
+    static String getCached(final Uri uri) {
+        final String key = getKey(uri);
+
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    /**
+     * Remember the detected mime type of a {@link Uri} whose content was read elsewhere.
+     */
+    static void put(final Uri uri, final String mimeType) {
+        final String key = getKey(uri);
+
+        synchronized (cache) {
+            cache.put(key, mimeType);
+        }
+    }
+
+    /**
+     * Forget the mime type of a {@link Uri} whose content may have been replaced,
+     * like the destination of a completed capture or crop.
+     */
+    static void invalidate(final Uri uri) {
+        final String key = getKey(uri);
+
+        synchronized (cache) {
+            cache.remove(key);
+        }
+    }
+
+    /**
+     * Cache key of the current content of a {@link Uri}, file Uris change
+     * key whenever their file is rewritten.
+     */
+    private static String getKey(final Uri uri) {
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme()) && uri.getPath() != null) {
+            final File file = new File(uri.getPath());
+
+            return file.getPath() + ":" + file.length() + ":" + file.lastModified();
+        }
+
+        return uri.toString();
+    }
+
+    /**
+     * @see #detect(byte[], int)
+     */
+    @Nullable
+    public static String detect(final @NonNull File file) throws IOException {
+        final InputStream inputStream = new FileInputStream(file);
+
+        try {
+            return detect(inputStream);
+
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Read the start of a stream and detect its mime type.  The stream is
+     * consumed and should be closed by the caller.
+     *
+     * @see #detect(byte[], int)
+     */
+    @Nullable
+    public static String detect(final @NonNull InputStream inputStream) throws IOException {
+        final byte[] header = new byte[HEADER_SIZE];
+
+        int length = 0;
+        int bytesRead;
+
+        while (length < header.length && (bytesRead = inputStream.read(header, length, header.length - length)) != -1) {
+            length += bytesRead;
+        }
+
+        return detect(header, length);
+    }
+
+    /**
+     * @param header First bytes of the content.
+     * @param length Number of valid bytes in the header.
+     *
+     * @return Detected mime type, or null if the signature is not recognized.
+     */
+    @Nullable
+    public static String detect(final @NonNull byte[] header, final int length) {
+        if (startsWith(header, length, 0, 0xff, 0xd8, 0xff)) {
+            return "image/jpeg";
+        }
+
+        if (startsWith(header, length, 0, 0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a)) {
+            return "image/png";
+        }
+
+        if (startsWith(header, length, 0, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        }
+
+        if (startsWith(header, length, 0, 'R', 'I', 'F', 'F')) {
+            return getRiffMimeType(header, length);
+        }
+
+        if (startsWith(header, length, 4, 'f', 't', 'y', 'p')) {
+            return getIsoMediaMimeType(header, length);
+        }
+
+        if (startsWith(header, length, 0, '%', 'P', 'D', 'F', '-')) {
+            return "application/pdf";
+        }
+
+        if (startsWith(header, length, 0, 'B', 'M') && length >= 14) {
+            return "image/bmp";
+        }
+
+        if (startsWith(header, length, 0, 'I', 'I', '*', 0) || startsWith(header, length, 0, 'M', 'M', 0, '*')) {
+            return "image/tiff";
+        }
+
+        if (startsWith(header, length, 0, 0x1a, 0x45, 0xdf, 0xa3)) {
+            return contains(header, length, 'w', 'e', 'b', 'm') ? "video/webm" : "video/x-matroska";
+        }
+
+        if (startsWith(header, length, 0, 'O', 'g', 'g', 'S')) {
+            return "audio/ogg";
+        }
+
+        if (startsWith(header, length, 0, 'f', 'L', 'a', 'C')) {
+            return "audio/flac";
+        }
+
+        if (startsWith(header, length, 0, 'I', 'D', '3') || (length >= 2 && (header[0] & 0xff) == 0xff && (header[1] & 0xe0) == 0xe0)) {
+            return "audio/mpeg";
+        }
+
+        if (startsWith(header, length, 0, 'P', 'K', 0x03, 0x04)) {
+            return "application/zip";
+        }
+
+        return null;
+    }
+
+    /**
+     * @return True if the mime type is an image format the cropper can decode on this device.
+     */
+    public static boolean isCroppableImage(final @Nullable String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+
+        switch (mimeType) {
+            case "image/jpeg":
+            case "image/png":
+            case "image/webp":
+            case "image/gif":
+            case "image/bmp":
+                return true;
+
+            case "image/heic":
+            case "image/heif":
+                return Build.VERSION.SDK_INT >= Build.VERSION_CODES.P;
+
+            default:
+                return false;
+        }
+    }
+
+    private static String getRiffMimeType(final byte[] header, final int length) {
+        if (startsWith(header, length, 8, 'W', 'E', 'B', 'P')) {
+            return "image/webp";
+        }
+
+        if (startsWith(header, length, 8, 'W', 'A', 'V', 'E')) {
+            return "audio/x-wav";
+        }
+
+        if (startsWith(header, length, 8, 'A', 'V', 'I', ' ')) {
+            return "video/x-msvideo";
+        }
+
+        return null;
+    }
+
+    /**
+     * ISO base media files, identified by the major brand of their {@code ftyp} box.
+     */
+    private static String getIsoMediaMimeType(final byte[] header, final int length) {
+        if (length < 12) {
+            return null;
+        }
+
+        final String brand = new String(new char[] {
+            (char) (header[8] & 0xff), (char) (header[9] & 0xff), (char) (header[10] & 0xff), (char) (header[11] & 0xff)
+        });
+
+        switch (brand) {
+            case "heic":
+            case "heix":
+            case "hevc":
+            case "hevx":
+            case "heim":
+            case "heis":
+                return "image/heic";
+
+            case "mif1":
+            case "msf1":
+                return "image/heif";
+
+            case "avif":
+            case "avis":
+                return "image/avif";
+
+            case "qt  ":
+                return "video/quicktime";
+
+            case "M4A ":
+            case "M4B ":
+                return "audio/mp4";
+        }
+
+        if (brand.startsWith("3gp")) {
+            return "video/3gpp";
+        }
+
+        if (brand.startsWith("3g2")) {
+            return "video/3gpp2";
+        }
+
+        return "video/mp4";
+    }
+
+    private static boolean startsWith(final byte[] header, final int length, final int offset, final int... signature) {
+        if (length < offset + signature.length) {
+            return false;
+        }
+
+        for (int i = 0; i < signature.length; i++) {
+            if ((header[offset + i] & 0xff) != signature[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean contains(final byte[] header, final int length, final int... sequence) {
+        for (int offset = 0; offset + sequence.length <= length; offset++) {
+            if (startsWith(header, length, offset, sequence)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
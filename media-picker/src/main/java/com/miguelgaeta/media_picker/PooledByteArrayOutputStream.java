@@ -0,0 +1,80 @@
+package com.miguelgaeta.media_picker;
+
+import android.support.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A {@link ByteArrayOutputStream} that exposes its backing array so the content
+ * can be consumed in place, and whose backing arrays are drawn from and
+ * returned to the {@link BufferPool} rather than reallocated on every use.
+ */
+class PooledByteArrayOutputStream extends ByteArrayOutputStream {
+
+    private static final int INITIAL_SIZE = 64 * 1024;
+
+    private PooledByteArrayOutputStream() {
+        super(0);
+
+        buf = BufferPool.acquireBytes(INITIAL_SIZE);
+    }
+
+    /**
+     * Fetch an empty stream backed by a pooled buffer.
+     *
+     * @return Empty stream, must be handed back with {@link #recycle()}.
+     */
+    static PooledByteArrayOutputStream obtain() {
+        return new PooledByteArrayOutputStream();
+    }
+
+    @Override
+    public synchronized void write(final int b) {
+        ensureCapacity(count + 1);
+
+        super.write(b);
+    }
+
+    @Override
+    public synchronized void write(final @NonNull byte[] b, final int off, final int len) {
+        ensureCapacity(count + len);
+
+        super.write(b, off, len);
+    }
+
+    /**
+     * @return Backing array, valid up to {@link #size()}.
+     */
+    byte[] getBuffer() {
+        return buf;
+    }
+
+    /**
+     * Hand the backing array back to the pool once the
+     * content is no longer needed.
+     */
+    synchronized void recycle() {
+        BufferPool.release(buf);
+
+        buf = new byte[0];
+        count = 0;
+    }
+
+    /**
+     * Grow through the pool instead of letting the parent
+     * class copy into a freshly allocated array.
+     */
+    private void ensureCapacity(final int minCapacity) {
+        if (minCapacity <= buf.length) {
+            return;
+        }
+
+        final byte[] grown = BufferPool.acquireBytes(Math.max(minCapacity, buf.length * 2));
+
+        System.arraycopy(buf, 0, grown, 0, count);
+
+        BufferPool.release(buf);
+
+        buf = grown;
+    }
+}
@@ -11,38 +11,50 @@ public enum RequestType {
     CROP,
     CHOOSER;
 
+    /**
+     * Set on every request code carrying a token, the legacy
+     * request codes are all below it.
+     */
+    private static final int TOKEN_FLAG = 0x8000;
+
+    private static final int TYPE_BITS = 3;
+
+    /**
+     * Largest request token, request codes must fit in the lower 16 bits.
+     */
+    static final int MAX_TOKEN = (TOKEN_FLAG - 1) >> TYPE_BITS;
+
     /**
      * Internally get the associated request code to used in
      * the activity intent system.
      *
-     * @return Unique request code for each operation.
+     * @param token Token identifying the request, from 1 to {@link #MAX_TOKEN}.
+     *
+     * @return Unique request code for each operation and token.
      */
-    int getCode() {
-        switch (this) {
-            case CAMERA:
-                return 777;
-            case GALLERY:
-                return 778;
-            case DOCUMENTS:
-                return 779;
-            case CROP:
-                return 800;
-            case CHOOSER:
-                return 801;
-        }
+    int getCode(final int token) {
+        return TOKEN_FLAG | token << TYPE_BITS | ordinal();
+    }
 
-        return -1;
+    /**
+     * @param code Request code integer.
+     *
+     * @return Token the request code carries, or 0 for a legacy request code.
+     */
+    static int getToken(final int code) {
+        return (code & ~0xffff) == 0 && (code & TOKEN_FLAG) != 0 ? (code & ~TOKEN_FLAG) >> TYPE_BITS : 0;
     }
 
     /**
      * Convert request code integer back into a user
-     * friendly enum.
+     * friendly enum.  Request codes from before tokens were
+     * introduced are still recognized.
      *
      * @param code Request code integer.
      *
      * @return Request enum.
      */
-    static RequestType create(int code) {
+    static RequestType create(final int code) {
         switch (code) {
             case 777:
                 return CAMERA;
@@ -56,6 +68,12 @@ public enum RequestType {
                 return CHOOSER;
         }
 
-        return null;
+        if (getToken(code) == 0) {
+            return null;
+        }
+
+        final int ordinal = code & ((1 << TYPE_BITS) - 1);
+
+        return ordinal < values().length ? values()[ordinal] : null;
     }
 }
@@ -0,0 +1,223 @@
+package com.miguelgaeta.media_picker;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.Environment;
+import android.os.storage.StorageManager;
+import android.os.storage.StorageVolume;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Root directories of the mounted storage volumes keyed by volume UUID, the
+ * identifier used by external storage document ids of the form {@code <uuid>:<path>}.
+ *
+ * The index is built ahead of time on a background thread from the application's
+ * external files directories, which live under the root of every mounted volume,
+ * and from the platform volume list where available.  It is rebuilt the same way
+ * when a volume is mounted or removed so lookups stay a single hash map access.
+ * A lookup racing a build builds the index itself on the calling thread.
+ */
+class StorageVolumeIndex {
+
+    private static final String PRIMARY = "PRIMARY";
+
+    /**
+     * Directory removable volumes are mounted under.
+     */
+    private static final File STORAGE_DIRECTORY = new File("/storage");
+
+    private static final String APPLICATION_DIRECTORY = File.separator + "Android" + File.separator + "data" + File.separator;
+
+    private static StorageVolumeIndex instance;
+
+    private final Context context;
+
+    private Map<String, File> roots;
+
+    /**
+     * Bumped on every rebuild so builds racing with a newer one are dropped.
+     */
+    private int generation;
+
+    private StorageVolumeIndex(final Context context) {
+        this.context = context;
+
+        final IntentFilter filter = new IntentFilter();
+
+        filter.addAction(Intent.ACTION_MEDIA_MOUNTED);
+        filter.addAction(Intent.ACTION_MEDIA_UNMOUNTED);
+        filter.addAction(Intent.ACTION_MEDIA_EJECT);
+        filter.addAction(Intent.ACTION_MEDIA_REMOVED);
+        filter.addAction(Intent.ACTION_MEDIA_BAD_REMOVAL);
+        filter.addDataScheme("file");
+
+        context.registerReceiver(new BroadcastReceiver() {
+
+            @Override
+            public void onReceive(final Context context, final Intent intent) {
+                rebuild();
+            }
+        }, filter);
+
+        rebuild();
+    }
+
+    /**
+     * Start building the index on a background thread, typically at
+     * application start, so the first lookup does not have to.
+     *
+     * @param context Android application or activity context.
+     */
+    static void prewarm(final Context context) {
+        get(context);
+    }
+
+    /**
+     * @return Process wide index, its build started on first use.
+     */
+    static synchronized StorageVolumeIndex get(final Context context) {
+        if (instance == null) {
+            instance = new StorageVolumeIndex(context.getApplicationContext());
+        }
+
+        return instance;
+    }
+
+    /**
+     * @param uuid Volume UUID, or {@code primary} for the primary volume.
+     *
+     * @return Root directory of the volume, or null if it is not mounted.
+     */
+    File getRoot(final String uuid) {
+        Map<String, File> current;
+        final int currentGeneration;
+
+        synchronized (this) {
+            current = roots;
+            currentGeneration = generation;
+        }
+
+        if (current == null) {
+            current = build(context);
+
+            synchronized (this) {
+                if (currentGeneration == generation) {
+                    roots = current;
+                }
+            }
+        }
+
+        return current.get(uuid.toUpperCase(Locale.US));
+    }
+
+    /**
+     * Drop the current index and build it again on a background thread.
+     */
+    private void rebuild() {
+        final int buildGeneration;
+
+        synchronized (this) {
+            roots = null;
+            buildGeneration = ++generation;
+        }
+
+        MediaPickerExecutor.getBackground().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                final Map<String, File> built = build(context);
+
+                synchronized (StorageVolumeIndex.this) {
+                    if (buildGeneration == generation && roots == null) {
+                        roots = built;
+                    }
+                }
+            }
+        });
+    }
+
+    private static Map<String, File> build(final Context context) {
+        final Map<String, File> roots = new HashMap<>();
+
+        roots.put(PRIMARY, Environment.getExternalStorageDirectory());
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            for (final File directory : context.getExternalFilesDirs(null)) {
+                final File root = getVolumeRoot(directory);
+
+                if (root != null) {
+                    roots.put(root.getName().toUpperCase(Locale.US), root);
+                }
+            }
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            addStorageVolumes(context, roots);
+        }
+
+        return roots;
+    }
+
+    /**
+     * Add volumes the application has no files directory on, which
+     * are mounted under a directory named after their UUID.
+     */
+    @TargetApi(Build.VERSION_CODES.N)
+    private static void addStorageVolumes(final Context context, final Map<String, File> roots) {
+        final StorageManager storageManager = (StorageManager) context.getSystemService(Context.STORAGE_SERVICE);
+
+        if (storageManager == null) {
+            return;
+        }
+
+        for (final StorageVolume volume : storageManager.getStorageVolumes()) {
+            final String uuid = volume.getUuid();
+
+            if (uuid == null || !Environment.MEDIA_MOUNTED.equals(volume.getState())) {
+                continue;
+            }
+
+            final String key = uuid.toUpperCase(Locale.US);
+
+            if (!roots.containsKey(key)) {
+                final File root = new File(STORAGE_DIRECTORY, uuid);
+
+                if (root.isDirectory()) {
+                    roots.put(key, root);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Volume root of an external files directory, or null for the primary volume or a missing directory.
+     */
+    private static File getVolumeRoot(final File directory) {
+        if (directory == null) {
+            return null;
+        }
+
+        final String path = directory.getAbsolutePath();
+        final int index = path.indexOf(APPLICATION_DIRECTORY);
+
+        if (index <= 0) {
+            return null;
+        }
+
+        final File root = new File(path.substring(0, index));
+
+        if (root.equals(Environment.getExternalStorageDirectory())) {
+            return null;
+        }
+
+        return root;
+    }
+}
@@ -0,0 +1,54 @@
+package com.miguelgaeta.media_picker;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.os.TraceCompat;
+
+/**
+ * {@link MediaPickerMetrics} emitting an {@link android.os.Trace} section for each
+ * phase, visible in systrace and Perfetto captures, optionally forwarding
+ * every event to another listener.
+ *
+ * The external activity phase starts and ends in different frames of the main
+ * thread, so it is forwarded but never traced as a section.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TraceMetrics implements MediaPickerMetrics {
+
+    private static final String SECTION_PREFIX = "MediaPicker.";
+
+    private final MediaPickerMetrics delegate;
+
+    public TraceMetrics() {
+        this(null);
+    }
+
+    /**
+     * @param delegate Listener also receiving every event, or null.
+     */
+    public TraceMetrics(final @Nullable MediaPickerMetrics delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onStart(final @NonNull Phase phase) {
+        if (phase != Phase.EXTERNAL_ACTIVITY) {
+            TraceCompat.beginSection(SECTION_PREFIX + phase.name());
+        }
+
+        if (delegate != null) {
+            delegate.onStart(phase);
+        }
+    }
+
+    @Override
+    public void onEnd(final @NonNull Phase phase, final long durationNanos, final long bytes, final @Nullable Throwable error) {
+        if (delegate != null) {
+            delegate.onEnd(phase, durationNanos, bytes, error);
+        }
+
+        if (phase != Phase.EXTERNAL_ACTIVITY) {
+            TraceCompat.endSection();
+        }
+    }
+}
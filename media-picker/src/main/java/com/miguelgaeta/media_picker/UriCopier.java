@@ -0,0 +1,632 @@
+package com.miguelgaeta.media_picker;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.webkit.MimeTypeMap;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Copies the content behind a {@link Uri} into a library owned file.
+ *
+ * The content is opened as a file descriptor and, when its size is known, moved
+ * with {@link FileChannel#transferFrom} into a target preallocated to that size.
+ * Pipes and other descriptors of unknown size are read through a pooled buffer.
+ *
+ * Large seekable content is instead split into ranges copied concurrently with
+ * positional reads and writes.  The checksum of every completed range is
+ * journaled next to the partial copy so an interrupted copy resumes with
+ * the ranges that are still intact on disk.
+ */
+class UriCopier {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Modification time column of document providers, {@code DocumentsContract.Document.COLUMN_LAST_MODIFIED}.
+     */
+    private static final String COLUMN_LAST_MODIFIED = "last_modified";
+
+    private static final String PARTIAL_SUFFIX = ".part";
+
+    private static final String PROGRESS_SUFFIX = ".progress";
+
+    /**
+     * Content at least this large is copied in parallel ranges.
+     */
+    private static final long PARALLEL_THRESHOLD = 32 * 1024 * 1024;
+
+    private static final long RANGE_SIZE = 8 * 1024 * 1024;
+
+    private static final int RANGE_BUFFER_SIZE = 256 * 1024;
+
+    private static final int THREAD_COUNT = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final @NonNull Runnable runnable) {
+            final Thread thread = new Thread(runnable, "media-picker-copy-" + count.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    });
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Striped locks serializing copies of the same content.
+     */
+    private static final Object[] copyLocks = new Object[32];
+
+    static {
+        for (int i = 0; i < copyLocks.length; i++) {
+            copyLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Canonical paths of the partial copies and progress journals being written.
+     */
+    private static final Set<String> inFlight = Collections.synchronizedSet(new HashSet<String>());
+
+    /**
+     * Copy target {@link Uri} into the copies directory, reusing an earlier copy
+     * of the same {@link Uri} if it still has the size and modification time
+     * reported by the provider.
+     *
+     * @param context Android application or activity context.
+     * @param uri Source {@link Uri}.
+     * @param onProgress Optional progress callback.
+     *
+     * @return Local copy of the content.
+     *
+     * @throws IOException Failure to open the source or write the copy.
+     */
+    static File copy(final Context context, final Uri uri, final @Nullable MediaPickerUri.OnCopyProgress onProgress) throws IOException {
+        final long start = Metrics.start(MediaPickerMetrics.Phase.COPY);
+
+        File file = null;
+        Throwable error = null;
+
+        try {
+            file = copyDescriptor(context, uri, onProgress);
+
+            MediaPickerCache.touch(context, file);
+
+            return file;
+
+        } catch (final IOException | RuntimeException e) {
+            error = e;
+
+            throw e;
+
+        } finally {
+            Metrics.end(MediaPickerMetrics.Phase.COPY, start, file != null && start != 0 ? file.length() : -1, error);
+        }
+    }
+
+    private static File copyDescriptor(final Context context, final Uri uri, final @Nullable MediaPickerUri.OnCopyProgress onProgress) throws IOException {
+        final ParcelFileDescriptor descriptor = openFileDescriptor(context, uri);
+
+        try {
+            final long size = descriptor.getStatSize();
+            final long lastModified = getLastModified(context, uri, descriptor);
+
+            final String name = getFileName(uri, size, lastModified);
+
+            // Copies of the same content share their target, partial copy and journal.
+            synchronized (copyLocks[(name.hashCode() & 0x7fffffff) % copyLocks.length]) {
+                return copyDescriptor(descriptor, new File(MediaPickerFiles.getCopiesDirectory(context), name), size, lastModified > 0, onProgress);
+            }
+
+        } finally {
+            descriptor.close();
+        }
+    }
+
+    /**
+     * @param reusable Whether the content version is known, an earlier copy or partial copy
+     *                 of unknown version could hold different content of the same size.
+     */
+    private static File copyDescriptor(final ParcelFileDescriptor descriptor,
+                                       final File target,
+                                       final long size,
+                                       final boolean reusable,
+                                       final @Nullable MediaPickerUri.OnCopyProgress onProgress) throws IOException {
+        if (reusable && size >= 0 && target.length() == size && target.isFile()) {
+            return target;
+        }
+
+        final File partial = new File(target.getPath() + PARTIAL_SUFFIX);
+
+        final String partialPath = MediaPickerFiles.getCanonicalPath(partial);
+        final String progressPath = partialPath + PROGRESS_SUFFIX;
+
+        inFlight.add(partialPath);
+        inFlight.add(progressPath);
+
+        try {
+            return copyDescriptor(descriptor, target, partial, size, reusable, onProgress);
+
+        } finally {
+            inFlight.remove(partialPath);
+            inFlight.remove(progressPath);
+        }
+    }
+
+    /**
+     * @return True if target file is a partial copy or progress journal being written.
+     */
+    static boolean isInFlight(final File file) {
+        return inFlight.contains(MediaPickerFiles.getCanonicalPath(file));
+    }
+
+    private static File copyDescriptor(final ParcelFileDescriptor descriptor,
+                                       final File target,
+                                       final File partial,
+                                       final long size,
+                                       final boolean reusable,
+                                       final @Nullable MediaPickerUri.OnCopyProgress onProgress) throws IOException {
+        if (size >= PARALLEL_THRESHOLD) {
+            copyRanges(descriptor, partial, size, reusable, onProgress);
+
+            if (!partial.renameTo(target)) {
+
+                throw new IOException("Unable to move copied content into place: " + target);
+            }
+
+            return target;
+        }
+
+        final FileChannel source = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+        final RandomAccessFile output = new RandomAccessFile(partial, "rw");
+
+        try {
+            if (size >= 0) {
+                output.setLength(size);
+
+                transfer(source, output.getChannel(), size);
+
+                if (onProgress != null) {
+                    onProgress.onProgress(size, size);
+                }
+
+            } else {
+                output.setLength(0);
+
+                stream(source, output.getChannel());
+            }
+
+        } finally {
+            output.close();
+            source.close();
+        }
+
+        if (!partial.renameTo(target)) {
+
+            throw new IOException("Unable to move copied content into place: " + target);
+        }
+
+        return target;
+    }
+
+    static ParcelFileDescriptor openFileDescriptor(final Context context, final Uri uri) throws IOException {
+        final ParcelFileDescriptor descriptor;
+
+        try {
+            descriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+
+        } catch (final FileNotFoundException | SecurityException e) {
+
+            throw new IOException("Unable to open content for copying: " + uri, e);
+        }
+
+        if (descriptor == null) {
+
+            throw new IOException("Provider returned no content for: " + uri);
+        }
+
+        return descriptor;
+    }
+
+    /**
+     * Modification time of the content in milliseconds, from the provider
+     * or the file descriptor where supported, or 0 when unknown.
+     */
+    private static long getLastModified(final Context context, final Uri uri, final ParcelFileDescriptor descriptor) {
+        Cursor cursor = null;
+
+        try {
+            cursor = context.getContentResolver().query(uri, null, null, null, null);
+
+            if (cursor != null && cursor.moveToFirst()) {
+                final int documentIndex = cursor.getColumnIndex(COLUMN_LAST_MODIFIED);
+
+                if (documentIndex >= 0 && !cursor.isNull(documentIndex) && cursor.getLong(documentIndex) > 0) {
+                    return cursor.getLong(documentIndex);
+                }
+
+                final int mediaIndex = cursor.getColumnIndex(MediaStore.MediaColumns.DATE_MODIFIED);
+
+                // The MediaStore reports modification time in seconds.
+                if (mediaIndex >= 0 && !cursor.isNull(mediaIndex) && cursor.getLong(mediaIndex) > 0) {
+                    return cursor.getLong(mediaIndex) * 1000;
+                }
+            }
+
+        } catch (final RuntimeException ignored) {
+
+            // Fall back to the file descriptor.
+
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            try {
+                return Os.fstat(descriptor.getFileDescriptor()).st_mtime * 1000;
+
+            } catch (final ErrnoException ignored) {
+
+                // Unknown modification time.
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Stable name derived from the {@link Uri} and version of its content so
+     * repeated copies of the same content land in the same file.
+     */
+    static String getFileName(final Uri uri, final long size, final long lastModified) throws IOException {
+        final String extension = MimeTypeMap.getFileExtensionFromUrl(uri.toString());
+
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest((uri + "\n" + size + "\n" + lastModified).getBytes("UTF-8"));
+
+            final StringBuilder name = new StringBuilder();
+
+            for (final byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+
+            if (extension != null && !extension.isEmpty()) {
+                name.append('.').append(extension);
+            }
+
+            return name.toString();
+
+        } catch (final NoSuchAlgorithmException e) {
+
+            throw new IOException("Unable to name copied content.", e);
+        }
+    }
+
+    /**
+     * Copy a seekable source of known size as concurrent ranges.  Ranges recorded
+     * in the progress journal by an earlier attempt are skipped as long as the
+     * partial copy still matches their checksum and the content version is known.
+     */
+    private static void copyRanges(final ParcelFileDescriptor descriptor,
+                                   final File partial,
+                                   final long size,
+                                   final boolean resumable,
+                                   final @Nullable MediaPickerUri.OnCopyProgress onProgress) throws IOException {
+        final File progressFile = new File(partial.getPath() + PROGRESS_SUFFIX);
+
+        final FileChannel source = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+        final RandomAccessFile output = new RandomAccessFile(partial, "rw");
+
+        try {
+            final FileChannel target = output.getChannel();
+
+            final Map<Integer, Long> completed = readProgress(progressFile, size);
+
+            if (!resumable || completed.isEmpty() || output.length() != size) {
+                completed.clear();
+
+                output.setLength(size);
+
+                writeProgressHeader(progressFile, size);
+            }
+
+            final int rangeCount = (int) ((size + RANGE_SIZE - 1) / RANGE_SIZE);
+
+            final AtomicLong copied = new AtomicLong();
+            final Writer progressWriter = new OutputStreamWriter(new FileOutputStream(progressFile, true), "US-ASCII");
+
+            final List<Future<?>> futures = new ArrayList<>(rangeCount);
+
+            try {
+                for (int index = 0; index < rangeCount; index++) {
+                    final int range = index;
+                    final long position = range * RANGE_SIZE;
+                    final long length = Math.min(RANGE_SIZE, size - position);
+
+                    final Long checksum = completed.get(range);
+
+                    if (checksum != null && checksum == getChecksum(target, position, length)) {
+                        notifyProgress(onProgress, copied.addAndGet(length), size);
+
+                        continue;
+                    }
+
+                    futures.add(executor.submit(new Callable<Void>() {
+
+                        @Override
+                        public Void call() throws IOException {
+                            final long rangeChecksum = copyRange(source, target, position, length);
+
+                            synchronized (progressWriter) {
+                                progressWriter.write(range + " " + rangeChecksum + "\n");
+                                progressWriter.flush();
+                            }
+
+                            notifyProgress(onProgress, copied.addAndGet(length), size);
+
+                            return null;
+                        }
+                    }));
+                }
+
+                for (final Future<?> future : futures) {
+                    future.get();
+                }
+
+            } catch (final ExecutionException e) {
+
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException("Unable to copy content range.", e.getCause());
+
+            } catch (final InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+
+                throw new IOException("Interrupted while copying content.", e);
+
+            } finally {
+                for (final Future<?> future : futures) {
+                    future.cancel(true);
+                }
+
+                progressWriter.close();
+            }
+
+        } finally {
+            output.close();
+            source.close();
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        progressFile.delete();
+    }
+
+    /**
+     * Copy a single range with positional reads and writes, safe to run
+     * concurrently with other ranges on the same channels.
+     *
+     * @return Checksum of the copied bytes.
+     */
+    private static long copyRange(final FileChannel source, final FileChannel target, final long position, final long length) throws IOException {
+        final byte[] buffer = BufferPool.acquireBytes(RANGE_BUFFER_SIZE);
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, RANGE_BUFFER_SIZE);
+        final CRC32 checksum = new CRC32();
+
+        try {
+            long offset = 0;
+
+            while (offset < length) {
+                byteBuffer.clear();
+                byteBuffer.limit((int) Math.min(RANGE_BUFFER_SIZE, length - offset));
+
+                final int bytesRead = source.read(byteBuffer, position + offset);
+
+                if (bytesRead < 0) {
+
+                    throw new IOException("Content ended before its reported size.");
+                }
+
+                checksum.update(buffer, 0, bytesRead);
+
+                byteBuffer.flip();
+
+                while (byteBuffer.hasRemaining()) {
+                    target.write(byteBuffer, position + offset + byteBuffer.position());
+                }
+
+                offset += bytesRead;
+            }
+
+            return checksum.getValue();
+
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * @return Checksum of a range of the partial copy.
+     */
+    private static long getChecksum(final FileChannel channel, final long position, final long length) throws IOException {
+        final byte[] buffer = BufferPool.acquireBytes(RANGE_BUFFER_SIZE);
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, RANGE_BUFFER_SIZE);
+        final CRC32 checksum = new CRC32();
+
+        try {
+            long offset = 0;
+
+            while (offset < length) {
+                byteBuffer.clear();
+                byteBuffer.limit((int) Math.min(RANGE_BUFFER_SIZE, length - offset));
+
+                final int bytesRead = channel.read(byteBuffer, position + offset);
+
+                if (bytesRead < 0) {
+                    return -1;
+                }
+
+                checksum.update(buffer, 0, bytesRead);
+
+                offset += bytesRead;
+            }
+
+            return checksum.getValue();
+
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Read the checksums of completed ranges, the journal starts with the
+     * content size and is ignored if it was written for another size.
+     */
+    @SuppressLint("UseSparseArrays")
+    private static Map<Integer, Long> readProgress(final File progressFile, final long size) {
+        final Map<Integer, Long> completed = new HashMap<>();
+
+        if (!progressFile.isFile()) {
+            return completed;
+        }
+
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(progressFile), "US-ASCII"));
+
+            try {
+                if (!String.valueOf(size).equals(reader.readLine())) {
+                    return completed;
+                }
+
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    final String[] split = line.split(" ");
+
+                    if (split.length == 2) {
+                        completed.put(Integer.parseInt(split[0]), Long.parseLong(split[1]));
+                    }
+                }
+
+            } finally {
+                reader.close();
+            }
+
+        } catch (final IOException | NumberFormatException ignored) {
+
+            // A damaged journal only means ranges are copied again.
+        }
+
+        return completed;
+    }
+
+    private static void writeProgressHeader(final File progressFile, final long size) throws IOException {
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(progressFile, false), "US-ASCII");
+
+        try {
+            writer.write(size + "\n");
+
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void notifyProgress(final @Nullable MediaPickerUri.OnCopyProgress onProgress, final long copied, final long total) {
+        if (onProgress != null) {
+            onProgress.onProgress(copied, total);
+        }
+    }
+
+    /**
+     * Transfer a source of known size, truncating the target
+     * if the source turns out to be shorter.
+     */
+    private static void transfer(final FileChannel source, final FileChannel target, final long size) throws IOException {
+        long position = 0;
+
+        while (position < size) {
+            final long transferred = target.transferFrom(source, position, size - position);
+
+            if (transferred <= 0) {
+                break;
+            }
+
+            position += transferred;
+        }
+
+        if (position < size) {
+            target.truncate(position);
+        }
+    }
+
+    /**
+     * Copy a source of unknown size until it is exhausted.
+     */
+    private static void stream(final FileChannel source, final FileChannel target) throws IOException {
+        final byte[] buffer = BufferPool.acquireBytes(BUFFER_SIZE);
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+
+        try {
+            while (source.read(byteBuffer) != -1) {
+                byteBuffer.flip();
+
+                while (byteBuffer.hasRemaining()) {
+                    target.write(byteBuffer);
+                }
+
+                byteBuffer.clear();
+            }
+
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.miguelgaeta.media_picker;
+
+import android.annotation.TargetApi;
+import android.content.ComponentName;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Build;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks the {@link Uri} permissions granted for each outstanding request.
+ *
+ * Write access to a capture destination is granted only to the packages offered
+ * for the request, as resolved by {@link MediaPickerChooser}, and revoked as a
+ * whole once the request returns a result or is abandoned for another one, so
+ * grants never pile up in the system permission table.
+ */
+class UriGrants {
+
+    private static final int MODE = Intent.FLAG_GRANT_WRITE_URI_PERMISSION | Intent.FLAG_GRANT_READ_URI_PERMISSION;
+
+    private static final Map<Integer, Grant> outstanding = new HashMap<>();
+
+    /**
+     * Grant access to a {@link Uri} to every package able to handle target implicit intent,
+     * skipping the application itself and Uris that are not content Uris.
+     *
+     * @param context Android application or activity context.
+     * @param requestCode Request the grant belongs to.
+     * @param intent Intent whose handling packages receive access.
+     * @param uri Granted {@link Uri}.
+     */
+    static void grant(final Context context, final int requestCode, final Intent intent, final Uri uri) {
+        if (!ContentResolver.SCHEME_CONTENT.equals(uri.getScheme())) {
+            return;
+        }
+
+        final Set<String> packageNames = new LinkedHashSet<>();
+
+        for (final ComponentName componentName : MediaPickerChooser.queryActivities(context, intent, PackageManager.MATCH_DEFAULT_ONLY)) {
+            if (!componentName.getPackageName().equals(context.getPackageName())) {
+                packageNames.add(componentName.getPackageName());
+            }
+        }
+
+        for (final String packageName : packageNames) {
+            context.grantUriPermission(packageName, uri, MODE);
+        }
+
+        final Grant previous;
+
+        synchronized (outstanding) {
+            previous = outstanding.put(requestCode, new Grant(uri, packageNames));
+        }
+
+        if (previous != null) {
+            previous.revoke(context);
+        }
+    }
+
+    /**
+     * Revoke the grants of a request once it has returned.
+     */
+    static void revoke(final Context context, final int requestCode) {
+        final Grant grant;
+
+        synchronized (outstanding) {
+            grant = outstanding.remove(requestCode);
+        }
+
+        if (grant != null) {
+            grant.revoke(context);
+        }
+    }
+
+    private static class Grant {
+
+        private final Uri uri;
+        private final Set<String> packageNames;
+
+        Grant(final Uri uri, final Set<String> packageNames) {
+            this.uri = uri;
+            this.packageNames = packageNames;
+        }
+
+        void revoke(final Context context) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                revokePackages(context);
+
+            } else {
+                context.revokeUriPermission(uri, MODE);
+            }
+        }
+
+        @TargetApi(Build.VERSION_CODES.O)
+        private void revokePackages(final Context context) {
+            for (final String packageName : packageNames) {
+                context.revokeUriPermission(packageName, uri, MODE);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.miguelgaeta.media_picker;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of {@link Uri} to file path resolutions.
+ *
+ * Each entry remembers the size and modification time of the file it resolved
+ * to and is dropped as soon as either changes.  A {@link ContentObserver} on the
+ * MediaStore collections also drops entries the provider reports as changed,
+ * matched by MediaStore id since the picked {@link Uri} is usually a document
+ * {@link Uri} rather than the item {@link Uri} the observer receives.
+ */
+class UriPathCache {
+
+    private static final String AUTHORITY_MEDIA_DOCUMENT = "com.android.providers.media.documents";
+
+    private final Map<Uri, Resolution> entries;
+
+    private final ContentResolver contentResolver;
+
+    private final ContentObserver observer = new ContentObserver(null) {
+
+        @Override
+        public void onChange(final boolean selfChange) {
+            onChange(selfChange, null);
+        }
+
+        @Override
+        public void onChange(final boolean selfChange, final Uri uri) {
+            invalidate(uri);
+        }
+    };
+
+    UriPathCache(final Context context, final int maxEntries) {
+        this.contentResolver = context.getApplicationContext().getContentResolver();
+
+        this.entries = new LinkedHashMap<Uri, Resolution>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Uri, Resolution> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        contentResolver.registerContentObserver(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, true, observer);
+        contentResolver.registerContentObserver(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, true, observer);
+        contentResolver.registerContentObserver(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, true, observer);
+        contentResolver.registerContentObserver(MediaStore.Files.getContentUri("external"), true, observer);
+    }
+
+    /**
+     * @return Cached file if it is still unchanged on disk, null otherwise.
+     */
+    synchronized File get(final Uri uri) {
+        final Resolution entry = entries.get(uri);
+
+        if (entry == null) {
+            return null;
+        }
+
+        final File file = new File(entry.path);
+
+        if (file.length() != entry.size || file.lastModified() != entry.lastModified || !file.exists()) {
+            entries.remove(uri);
+
+            return null;
+        }
+
+        return file;
+    }
+
+    synchronized void put(final Uri uri, final File file) {
+        entries.put(uri, new Resolution(getMediaId(uri), file.getPath(), file.length(), file.lastModified()));
+    }
+
+    /**
+     * Drop the entries resolved from the changed MediaStore item, or every
+     * entry when the change is not specific to a single item.
+     */
+    synchronized void invalidate(final Uri uri) {
+        final long mediaId = uri != null ? getMediaId(uri) : -1;
+
+        if (mediaId < 0) {
+            entries.clear();
+
+            return;
+        }
+
+        final Iterator<Resolution> iterator = entries.values().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().mediaId == mediaId) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Stop observing the provider and drop every entry.
+     */
+    synchronized void release() {
+        contentResolver.unregisterContentObserver(observer);
+
+        entries.clear();
+    }
+
+    /**
+     * @return MediaStore id of a MediaStore item or media document {@link Uri}, or -1.
+     */
+    private static long getMediaId(final Uri uri) {
+        final String segment = uri.getLastPathSegment();
+
+        if (segment == null) {
+            return -1;
+        }
+
+        final String id;
+
+        if (MediaStore.AUTHORITY.equals(uri.getAuthority())) {
+            id = segment;
+
+        } else if (AUTHORITY_MEDIA_DOCUMENT.equals(uri.getAuthority())) {
+
+            // Document ids have the form <type>:<id>.
+            id = segment.substring(segment.indexOf(':') + 1);
+
+        } else {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(id);
+
+        } catch (final NumberFormatException e) {
+
+            return -1;
+        }
+    }
+
+    private static class Resolution {
+
+        private final long mediaId;
+        private final String path;
+        private final long size;
+        private final long lastModified;
+
+        Resolution(final long mediaId, final String path, final long size, final long lastModified) {
+            this.mediaId = mediaId;
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.miguelgaeta.media_picker;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Strategy converting the {@link Uri} of a single authority or scheme into a file path.
+ *
+ * @see MediaPickerUri#registerResolver(String, UriResolver)
+ * @see MediaPickerUri#registerSchemeResolver(String, UriResolver)
+ */
+public interface UriResolver {
+
+    /**
+     * @param context Android application or activity context.
+     * @param uri Source Uri, always of the authority or scheme the resolver was registered for.
+     *
+     * @return Path of the file backing the Uri, or null to fall back to querying the provider.
+     *
+     * @throws IOException Thrown if the Uri is known to have no local file.
+     */
+    @Nullable
+    String getPath(final @NonNull Context context, final @NonNull Uri uri) throws IOException;
+}
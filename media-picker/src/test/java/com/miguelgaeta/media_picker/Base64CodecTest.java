@@ -0,0 +1,144 @@
+package com.miguelgaeta.media_picker;
+
+import android.util.Base64;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(Parameterized.class)
+public class Base64CodecTest {
+
+    private static final int[] FLAGS = {
+        Base64.DEFAULT,
+        Base64.NO_WRAP,
+        Base64.NO_PADDING,
+        Base64.NO_WRAP | Base64.NO_PADDING,
+        Base64.CRLF,
+        Base64.URL_SAFE,
+        Base64.URL_SAFE | Base64.NO_WRAP | Base64.NO_PADDING
+    };
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> getCodecs() {
+        return Arrays.asList(new Object[][] {
+            {"PLATFORM", Base64Codec.PLATFORM},
+            {"TABLE", Base64Codec.TABLE},
+            {"JAVA", Base64Codec.JAVA}
+        });
+    }
+
+    private final Base64Codec codec;
+
+    public Base64CodecTest(final String name, final Base64Codec codec) {
+        this.codec = codec;
+    }
+
+    @Test
+    public void encodeRoundTrips() {
+        final Random random = new Random(0);
+
+        for (int length = 0; length <= 300; length++) {
+            final byte[] source = new byte[length];
+
+            random.nextBytes(source);
+
+            final String encoded = encodeChars(source, 0, length, Base64.NO_WRAP);
+
+            assertArrayEquals("Length " + length, source, java.util.Base64.getDecoder().decode(encoded));
+        }
+    }
+
+    @Test
+    public void encodePadsPartialQuanta() {
+        assertEquals("", encodeChars(new byte[0], 0, 0, Base64.NO_WRAP));
+        assertEquals("AQ==", encodeChars(new byte[] {1}, 0, 1, Base64.NO_WRAP));
+        assertEquals("AQI=", encodeChars(new byte[] {1, 2}, 0, 2, Base64.NO_WRAP));
+        assertEquals("AQID", encodeChars(new byte[] {1, 2, 3}, 0, 3, Base64.NO_WRAP));
+
+        assertEquals("AQ", encodeChars(new byte[] {1}, 0, 1, Base64.NO_WRAP | Base64.NO_PADDING));
+        assertEquals("AQI", encodeChars(new byte[] {1, 2}, 0, 2, Base64.NO_WRAP | Base64.NO_PADDING));
+    }
+
+    @Test
+    public void encodeWrapsEvery57Bytes() {
+        final byte[] source = new byte[58];
+
+        final String line = encodeChars(source, 0, 57, Base64.DEFAULT);
+
+        assertEquals(77, line.length());
+        assertEquals('\n', line.charAt(76));
+
+        final String lines = encodeChars(source, 0, 58, Base64.DEFAULT);
+
+        assertEquals(76 + 1 + 4 + 1, lines.length());
+        assertEquals('\n', lines.charAt(76));
+        assertEquals('\n', lines.charAt(lines.length() - 1));
+
+        final String crlf = encodeChars(source, 0, 57, Base64.CRLF);
+
+        assertEquals("\r\n", crlf.substring(76));
+
+        final String unwrapped = encodeChars(source, 0, 58, Base64.NO_WRAP);
+
+        assertEquals(80, unwrapped.length());
+        assertEquals(-1, unwrapped.indexOf('\n'));
+    }
+
+    @Test
+    public void encodeMatchesPlatformForEveryFlag() {
+        final Random random = new Random(1);
+
+        for (final int flags : FLAGS) {
+            for (final int length : new int[] {0, 1, 2, 3, 56, 57, 58, 114, 115, 1000}) {
+                final byte[] source = new byte[length + 3];
+
+                random.nextBytes(source);
+
+                final String expected = new String(Base64.encode(source, 3, length, flags));
+
+                assertEquals("Flags " + flags + ", length " + length, expected, encodeChars(source, 3, length, flags));
+                assertEquals("Flags " + flags + ", length " + length, expected, encodeBytes(source, 3, length, flags));
+            }
+        }
+    }
+
+    @Test
+    public void encodeWritesAtDestinationOffset() {
+        final char[] destination = new char[8];
+
+        Arrays.fill(destination, '.');
+
+        final int length = codec.encode(new byte[] {1, 2, 3}, 0, 3, destination, 2, Base64.NO_WRAP);
+
+        assertEquals(4, length);
+        assertEquals("..AQID..", new String(destination));
+    }
+
+    private String encodeChars(final byte[] source, final int offset, final int length, final int flags) {
+        final char[] destination = new char[(int) Encoder.getEncodedLength(length, flags)];
+
+        final int written = codec.encode(source, offset, length, destination, 0, flags);
+
+        assertEquals(destination.length, written);
+
+        return new String(destination);
+    }
+
+    private String encodeBytes(final byte[] source, final int offset, final int length, final int flags) {
+        final byte[] destination = new byte[(int) Encoder.getEncodedLength(length, flags)];
+
+        final int written = codec.encode(source, offset, length, destination, 0, flags);
+
+        assertEquals(destination.length, written);
+
+        return new String(destination);
+    }
+}
@@ -0,0 +1,122 @@
+package com.miguelgaeta.media_picker;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BufferPoolTest {
+
+    private static final int MAX_CLASS_LENGTH = 4 * 1024 * 1024;
+
+    private static final long MAX_SHARED_BYTES = 8 * 1024 * 1024;
+
+    @Before
+    public void setUp() {
+        BufferPool.trim();
+    }
+
+    @Test
+    public void acquireRoundsUpToSizeClass() {
+        assertEquals(1024, BufferPool.acquireBytes(1).length);
+        assertEquals(1024, BufferPool.acquireBytes(1024).length);
+        assertEquals(2048, BufferPool.acquireBytes(1025).length);
+        assertEquals(65536, BufferPool.acquireChars(40000).length);
+        assertEquals(MAX_CLASS_LENGTH, BufferPool.acquireBytes(MAX_CLASS_LENGTH).length);
+    }
+
+    @Test
+    public void acquireAllocatesExactlyBeyondLargestClass() {
+        final byte[] buffer = BufferPool.acquireBytes(MAX_CLASS_LENGTH + 1);
+
+        assertEquals(MAX_CLASS_LENGTH + 1, buffer.length);
+
+        final long retained = BufferPool.getStats().getRetainedBytes();
+
+        BufferPool.release(buffer);
+
+        assertEquals(retained, BufferPool.getStats().getRetainedBytes());
+    }
+
+    @Test
+    public void releasedBufferIsReused() {
+        final byte[] buffer = BufferPool.acquireBytes(3000);
+
+        BufferPool.release(buffer);
+
+        final long hits = BufferPool.getStats().getHits();
+
+        assertSame(buffer, BufferPool.acquireBytes(3000));
+        assertEquals(hits + 1, BufferPool.getStats().getHits());
+    }
+
+    @Test
+    public void releaseIgnoresBuffersOutsideSizeClasses() {
+        final byte[] buffer = new byte[1500];
+
+        BufferPool.release(buffer);
+
+        assertNotSame(buffer, BufferPool.acquireBytes(1500));
+    }
+
+    @Test
+    public void threadCacheBytesAreRetained() {
+        final BufferPool.Stats before = BufferPool.getStats();
+
+        final char[] buffer = BufferPool.acquireChars(8192);
+
+        BufferPool.release(buffer);
+
+        final BufferPool.Stats after = BufferPool.getStats();
+
+        assertEquals(before.getThreadBytes() + 8192 * 2, after.getThreadBytes());
+        assertEquals(after.getSharedBytes() + after.getThreadBytes(), after.getRetainedBytes());
+
+        BufferPool.acquireChars(8192);
+    }
+
+    @Test
+    public void sharedTierIsCapped() {
+        final byte[][] buffers = new byte[3][];
+
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = BufferPool.acquireBytes(MAX_CLASS_LENGTH);
+        }
+
+        for (final byte[] buffer : buffers) {
+            BufferPool.release(buffer);
+        }
+
+        assertEquals(MAX_SHARED_BYTES, BufferPool.getStats().getSharedBytes());
+
+        BufferPool.trim();
+
+        assertEquals(0, BufferPool.getStats().getSharedBytes());
+    }
+
+    @Test
+    public void sharedTierServesOtherThreads() throws InterruptedException {
+        final byte[] buffer = BufferPool.acquireBytes(MAX_CLASS_LENGTH);
+
+        BufferPool.release(buffer);
+
+        final byte[][] acquired = new byte[1][];
+
+        final Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                acquired[0] = BufferPool.acquireBytes(MAX_CLASS_LENGTH);
+            }
+        });
+
+        thread.start();
+        thread.join();
+
+        assertSame(buffer, acquired[0]);
+        assertTrue(BufferPool.getStats().getSharedBytes() == 0);
+    }
+}
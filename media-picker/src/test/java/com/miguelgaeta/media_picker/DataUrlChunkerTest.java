@@ -0,0 +1,111 @@
+package com.miguelgaeta.media_picker;
+
+import android.util.Base64;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DataUrlChunkerTest {
+
+    private static final String PREFIX = "data:image/png;base64,";
+
+    private static final DataUrlChunker.Tracer NO_TRACER = new DataUrlChunker.Tracer() {
+
+        @Override
+        public long start() {
+            return 0;
+        }
+
+        @Override
+        public void end(final long start, final long bytes, final Throwable error) {
+
+        }
+    };
+
+    @Test
+    public void chunksAreAlignedToQuanta() throws IOException {
+        final Random random = new Random(0);
+
+        for (final int maxChunkLength : new int[] {PREFIX.length() + 4, 64, 101, 4096}) {
+            for (final int length : new int[] {0, 1, 2, 3, 100, 1000, 9999}) {
+                final byte[] source = new byte[length];
+
+                random.nextBytes(source);
+
+                final List<String> chunks = readChunks(source, maxChunkLength);
+
+                final StringBuilder joined = new StringBuilder();
+
+                for (int i = 0; i < chunks.size(); i++) {
+                    final String chunk = chunks.get(i);
+
+                    assertTrue(chunk.length() <= maxChunkLength);
+
+                    if (i == 0) {
+                        assertTrue(chunk.startsWith(PREFIX));
+                    }
+
+                    if (i < chunks.size() - 1) {
+                        assertEquals(0, (chunk.length() - (i == 0 ? PREFIX.length() : 0)) % 4);
+                    }
+
+                    joined.append(chunk);
+                }
+
+                assertEquals(PREFIX + Base64.encodeToString(source, Base64.NO_WRAP), joined.toString());
+            }
+        }
+    }
+
+    @Test
+    public void exactMultipleEndsWithoutEmptyChunk() throws IOException {
+        final int maxChunkLength = PREFIX.length() + 8;
+
+        final List<String> chunks = readChunks(new byte[12], maxChunkLength);
+
+        assertEquals(2, chunks.size());
+        assertEquals(PREFIX.length() + 8, chunks.get(0).length());
+        assertEquals(8, chunks.get(1).length());
+    }
+
+    @Test
+    public void nextReturnsNullOnceFinished() throws IOException {
+        final DataUrlChunker chunker = new DataUrlChunker(PREFIX, new ByteArrayInputStream(new byte[3]), 64, Base64Codec.TABLE, NO_TRACER);
+
+        assertEquals(PREFIX + "AAAA", chunker.next());
+        assertFalse(chunker.hasNext());
+        assertNull(chunker.next());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void chunkLengthMustFitPrefixAndQuantum() {
+        new DataUrlChunker(PREFIX, new ByteArrayInputStream(new byte[0]), PREFIX.length() + 3, Base64Codec.TABLE, NO_TRACER);
+    }
+
+    private static List<String> readChunks(final byte[] source, final int maxChunkLength) throws IOException {
+        final DataUrlChunker chunker = new DataUrlChunker(PREFIX, new ByteArrayInputStream(source), maxChunkLength, Base64Codec.TABLE, NO_TRACER);
+
+        final List<String> chunks = new ArrayList<>();
+
+        try {
+            while (chunker.hasNext()) {
+                chunks.add(chunker.next());
+            }
+
+        } finally {
+            chunker.close();
+        }
+
+        return chunks;
+    }
+}
@@ -0,0 +1,136 @@
+package com.miguelgaeta.media_picker;
+
+import android.util.Base64;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EncoderCacheTest {
+
+    private static final String MIME_TYPE = "image/jpeg";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void repeatedFileIsEncodedOnce() throws IOException {
+        final File directory = folder.newFolder("cache");
+        final EncoderCache cache = new EncoderCache(directory, 1024 * 1024);
+
+        final byte[] content = getContent(3000, 0);
+        final File file = write("a.jpg", content);
+
+        final String expected = getDataUrl(content);
+
+        assertEquals(expected, cache.getDataUrl(MIME_TYPE, file));
+        assertEquals(expected, cache.getDataUrl(MIME_TYPE, file));
+
+        assertEquals(1, getEntryCount(directory));
+        assertEquals(Encoder.getEncodedLength(content.length, Base64.NO_WRAP), cache.getSize());
+    }
+
+    @Test
+    public void sameContentSharesEntry() throws IOException {
+        final File directory = folder.newFolder("cache");
+        final EncoderCache cache = new EncoderCache(directory, 1024 * 1024);
+
+        final byte[] content = getContent(3000, 0);
+
+        cache.getDataUrl(MIME_TYPE, write("a.jpg", content));
+
+        assertEquals(getDataUrl(content), cache.getDataUrl(MIME_TYPE, write("b.jpg", content)));
+        assertEquals(1, getEntryCount(directory));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvicted() throws IOException {
+        final File directory = folder.newFolder("cache");
+
+        final long entryLength = Encoder.getEncodedLength(3000, Base64.NO_WRAP);
+        final EncoderCache cache = new EncoderCache(directory, entryLength * 2);
+
+        for (int i = 0; i < 3; i++) {
+            final byte[] content = getContent(3000, i);
+
+            assertEquals(getDataUrl(content), cache.getDataUrl(MIME_TYPE, write(i + ".jpg", content)));
+        }
+
+        assertEquals(2, getEntryCount(directory));
+        assertTrue(cache.getSize() <= entryLength * 2);
+
+        final byte[] last = getContent(3000, 2);
+
+        assertEquals(getDataUrl(last), cache.getDataUrl(MIME_TYPE, write("2.jpg", last)));
+        assertEquals(2, getEntryCount(directory));
+    }
+
+    @Test
+    public void fileLargerThanCacheIsNotStored() throws IOException {
+        final File directory = folder.newFolder("cache");
+        final EncoderCache cache = new EncoderCache(directory, 1000);
+
+        final byte[] content = getContent(3000, 0);
+
+        assertEquals(getDataUrl(content), cache.getDataUrl(MIME_TYPE, write("a.jpg", content)));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void clearRemovesEveryEntry() throws IOException {
+        final File directory = folder.newFolder("cache");
+        final EncoderCache cache = new EncoderCache(directory, 1024 * 1024);
+
+        cache.getDataUrl(MIME_TYPE, write("a.jpg", getContent(3000, 0)));
+        cache.clear();
+
+        assertEquals(0, getEntryCount(directory));
+    }
+
+    private File write(final String name, final byte[] content) throws IOException {
+        final File file = new File(folder.getRoot(), name);
+        final OutputStream outputStream = new FileOutputStream(file);
+
+        try {
+            outputStream.write(content);
+
+        } finally {
+            outputStream.close();
+        }
+
+        return file;
+    }
+
+    private static byte[] getContent(final int length, final long seed) {
+        final byte[] content = new byte[length];
+
+        new Random(seed).nextBytes(content);
+
+        return content;
+    }
+
+    private static String getDataUrl(final byte[] content) {
+        return "data:" + MIME_TYPE + ";base64," + java.util.Base64.getEncoder().encodeToString(content);
+    }
+
+    private static int getEntryCount(final File directory) {
+        final String[] names = directory.list();
+
+        int count = 0;
+
+        for (final String name : names != null ? names : new String[0]) {
+            count += name.endsWith(".b64") ? 1 : 0;
+        }
+
+        return count;
+    }
+}